@@ -1,4 +1,8 @@
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The Animal class takes in an image of a cheetah and counts the number of
@@ -75,20 +79,92 @@ public class Animal {
    */
   public static Picture getPic(File file, int mode, int epsilon, int r1,
       int r2) {
-    Picture pic = new Picture(file);
-    if (mode >= 0) {
-      pic = GreyScale.getGreyScale(pic);
-    }
+    return getPic(file, mode, epsilon, r1, r2, null, 1);
+  }
+
+  /**
+   * Returns the picture produced from part of the cheetah image, or from
+   * every few pixels of it, based on the mode. Only that part and those
+   * pixels are decoded, and every stage runs on them alone, so the picture
+   * produced is the size of the region divided by the subsampling. The radii
+   * are in pixels of that picture.
+   * 
+   * @param file filepath for image
+   * @param mode the mode that the program is run with
+   * @param epsilon the value of epsilon to use when detecting edges
+   * @param r1 the minimum radius of the mask to use in spot detection
+   * @param r2 the maximum radius of the mask to use in spot detection
+   * @param region the part of the image to use, or null for all of it
+   * @param subsampling the distance between the pixels used, 1 for every
+   *        pixel
+   * @return updated picture of the region of the cheetah based on the mode
+   *         given
+   */
+  public static Picture getPic(File file, int mode, int epsilon, int r1,
+      int r2, Rectangle region, int subsampling) {
+    return getPic(file, mode, epsilon, r1, r2, region, subsampling, null);
+  }
+
+  /**
+   * Returns the picture produced from part of the cheetah image, or from
+   * every few pixels of it, based on the mode, running noise reduction, edge
+   * detection and spot detection on the threads in the pool. The picture is
+   * the same as the one produced on a single thread.
+   * 
+   * @param file filepath for image
+   * @param mode the mode that the program is run with
+   * @param epsilon the value of epsilon to use when detecting edges
+   * @param r1 the minimum radius of the mask to use in spot detection
+   * @param r2 the maximum radius of the mask to use in spot detection
+   * @param region the part of the image to use, or null for all of it
+   * @param subsampling the distance between the pixels used, 1 for every
+   *        pixel
+   * @param pool the threads to use, or null to use only the calling thread
+   * @return updated picture of the region of the cheetah based on the mode
+   *         given
+   */
+  public static Picture getPic(File file, int mode, int epsilon, int r1,
+      int r2, Rectangle region, int subsampling, ForkJoinPool pool) {
+    GreyRaster pic = GreyReader.read(file, region, subsampling);
     if (mode >= 1) {
-      pic = NoiseReduction.getNoiseReduction(pic);
+      pic = pool == null ? NoiseReduction.getNoiseReduction(pic)
+          : ParallelStages.getNoiseReduction(pic, pool);
     }
     if (mode >= 2) {
-      pic = EdgeDetection.getEdgeDetected(pic, epsilon);
+      pic = pool == null ? EdgeDetection.getEdgeDetected(pic, epsilon)
+          : ParallelStages.getEdgeDetected(pic, epsilon, pool);
     }
     if (mode >= 3) {
+      pic = pool == null ? SpotDetection.detectSpots(pic, r1, r2)
+          : ParallelSpotDetection.detectSpots(pic, r1, r2, pool);
+    }
+    return pic.toPicture();
+  }
+
+  /**
+   * Returns the picture produced based on the cheetah image and mode, which
+   * must be 2 or 3, using FusedPipeline to grey-scale the image, reduce its
+   * noise and detect its edges in one pass over its rows. Only the raster of
+   * edges is stored, and the picture is the same as getPic() produces.
+   * 
+   * @param file filepath for image
+   * @param mode the mode that the program is run with, 2 or 3
+   * @param epsilon the value of epsilon to use when detecting edges
+   * @param r1 the minimum radius of the mask to use in spot detection
+   * @param r2 the maximum radius of the mask to use in spot detection
+   * @return updated picture of cheetah based on the mode given
+   * @throws IllegalArgumentException if the mode is not 2 or 3
+   */
+  public static Picture getFusedPic(File file, int mode, int epsilon, int r1,
+      int r2) {
+    if (mode < 2 || mode > 3) {
+      throw new IllegalArgumentException("fused pipeline needs mode 2 or 3");
+    }
+    GreyRaster pic = FusedPipeline.getEdgeDetected(new Picture(file), epsilon);
+    if (mode == 3) {
       pic = SpotDetection.detectSpots(pic, r1, r2);
     }
-    return pic;
+    return pic.toPicture();
   }
 
   /**
@@ -123,11 +199,46 @@ public class Animal {
   /**
    * Reads in the command line arguments and calls the necessary methods to
    * check that the arguments are valid, before creating and saving the new
-   * image based on the given input image and mode.
+   * image based on the given input image and mode. The options
+   * --region=x,y,width,height and --subsample=n may follow the arguments to
+   * use only part of the image, or only every n-th pixel of it,
+   * --threads=n to run the stages on n threads, and --fused (modes 2 and 3
+   * only, on its own) to run the first three stages in one pass.
    * 
    * @param args the command line arguments
    */
   public static void main(String[] args) {
+    // Options come after the other arguments
+    int count = 0;
+    while (count < args.length && !args[count].startsWith("--")) {
+      count++;
+    }
+    Rectangle region = null;
+    int subsampling = 1;
+    int threads = 0; // none given, so the stages run on this thread
+    boolean fused = false;
+    for (int i = count; i < args.length; ++i) {
+      // at most 9 digits, so the numbers can't overflow
+      if (args[i].matches("--region=\\d{1,9},\\d{1,9},\\d{1,9},\\d{1,9}")) {
+        String[] values = args[i].substring("--region=".length()).split(",");
+        region = new Rectangle(Integer.parseInt(values[0]),
+            Integer.parseInt(values[1]), Integer.parseInt(values[2]),
+            Integer.parseInt(values[3]));
+        if (region.isEmpty()) {
+          throwError("ERROR: invalid region");
+        }
+      } else if (args[i].matches("--subsample=[1-9]\\d{0,8}")) {
+        subsampling = Integer.parseInt(args[i].substring(
+            "--subsample=".length()));
+      } else if (args[i].matches("--threads=[1-9]\\d{0,3}")) {
+        threads = Integer.parseInt(args[i].substring("--threads=".length()));
+      } else if (args[i].equals("--fused")) {
+        fused = true;
+      } else {
+        throwError("ERROR: invalid option");
+      }
+    }
+    args = Arrays.copyOf(args, count);
     // Check that the input is valid
     handleErrors(args);
     // Read the input into the various variables
@@ -143,8 +254,29 @@ public class Animal {
       r1 = Integer.parseInt(args[3]);
       r2 = Integer.parseInt(args[4]);
     }
+    // The fused pipeline reads every pixel on one thread, and only makes edges
+    if (fused && (mode < 2 || region != null || subsampling != 1
+        || threads > 0)) {
+      throwError("ERROR: invalid option");
+    }
+    // Invalid image or region
+    Dimension size = GreyReader.size(file);
+    if (size == null) {
+      throwError("ERROR: invalid or missing file");
+    } else if (region != null && !region.intersects(new Rectangle(size))) {
+      throwError("ERROR: region is outside image");
+    }
     // Create and save the new picture based on the mode
-    Picture pic = getPic(file, mode, epsilon, r1, r2);
+    Picture pic;
+    if (fused) {
+      pic = getFusedPic(file, mode, epsilon, r1, r2);
+    } else {
+      ForkJoinPool pool = threads > 0 ? new ForkJoinPool(threads) : null;
+      pic = getPic(file, mode, epsilon, r1, r2, region, subsampling, pool);
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
     savePic(pic, file, mode);
   }
 
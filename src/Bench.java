@@ -0,0 +1,46 @@
+/**
+ * The Bench class times code in the same way as a JMH benchmark: the code is
+ * run several times to let the JIT compiler finish, and then timed over
+ * several more runs, and the mean and standard deviation of the time per run
+ * are printed. It is shared by the benchmarks of the stages.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class Bench {
+  /** The number of runs before timing. */
+  public static final int WARMUP = 5;
+  /** The number of runs which are timed. */
+  public static final int RUNS = 10;
+
+  /**
+   * Runs a kernel WARMUP times without timing it and then RUNS times, and
+   * prints the mean and standard deviation of the time taken and the number
+   * of megapixels done per second.
+   *
+   * @param name the name of the kernel, at most 20 characters to line up
+   * @param megapixels the size of the picture
+   * @param kernel the kernel to run
+   */
+  public static void measure(String name, double megapixels,
+      Runnable kernel) {
+    for (int run = 0; run < WARMUP; ++run) {
+      kernel.run();
+    }
+    double[] times = new double[RUNS];
+    double mean = 0;
+    for (int run = 0; run < RUNS; ++run) {
+      long start = System.nanoTime();
+      kernel.run();
+      times[run] = (System.nanoTime() - start) / 1e6;
+      mean += times[run] / RUNS;
+    }
+    double variance = 0;
+    for (double time : times) {
+      variance += (time - mean) * (time - mean) / RUNS;
+    }
+    StdOut.printf("%-20s %4.0fMP %9.2f ms/op +- %6.2f %8.1f MP/s\n", name,
+        megapixels, mean, Math.sqrt(variance), megapixels * 1000 / mean);
+  }
+
+}
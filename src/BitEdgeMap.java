@@ -0,0 +1,158 @@
+/**
+ * The BitEdgeMap class stores a picture of edges using a single bit per pixel.
+ * The edges produced by EdgeDetection are either black or white, so storing
+ * them in a byte (or an int) per pixel wastes most of the memory. Each row is
+ * packed into longs, with pixel (col, row) stored in bit col % 64 of word
+ * col / 64 of the row, so up to 64 neighbouring pixels of a row can be read
+ * at once.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class BitEdgeMap {
+  private final long[] words; // the packed rows
+  private final int width; // number of columns
+  private final int height; // number of rows
+  private final int wordsPerRow; // number of longs used for each row
+
+  /**
+   * Creates an empty (all black) map with the given width and height.
+   *
+   * @param width the number of columns
+   * @param height the number of rows
+   */
+  public BitEdgeMap(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.wordsPerRow = (width + 63) / 64;
+    this.words = new long[wordsPerRow * height];
+  }
+
+  /**
+   * Packs a raster of edges into a new map. Any pixel which isn't black is
+   * treated as white.
+   *
+   * @param edges the raster of edges
+   * @return the packed map of the edges
+   */
+  public static BitEdgeMap fromRaster(GreyRaster edges) {
+    BitEdgeMap map = new BitEdgeMap(edges.width(), edges.height());
+    for (int row = 0; row < map.height; ++row) {
+      map.setRow(row, edges.data(), edges.index(0, row));
+    }
+    return map;
+  }
+
+  /**
+   * Replaces a whole row of the map with a row of pixels, where any pixel
+   * which isn't black is treated as white.
+   *
+   * @param row the row to replace
+   * @param pixels the array containing the pixels of the row
+   * @param start the index in pixels of the first pixel of the row
+   */
+  public void setRow(int row, byte[] pixels, int start) {
+    int base = row * wordsPerRow;
+    for (int w = 0; w < wordsPerRow; ++w) {
+      long word = 0;
+      int from = w << 6;
+      int to = Math.min(width, from + 64);
+      for (int col = from; col < to; ++col) {
+        // the sign of -pixel is 1 for any pixel which isn't black
+        word |= (-(long) (pixels[start + col] & 0xFF) >>> 63) << col;
+      }
+      words[base + w] = word;
+    }
+  }
+
+  /**
+   * Unpacks the map into a raster of black (0) and white (255) pixels.
+   *
+   * @return the raster of edges
+   */
+  public GreyRaster toRaster() {
+    GreyRaster edges = new GreyRaster(width, height);
+    for (int row = 0; row < height; ++row) {
+      for (int col = 0; col < width; ++col) {
+        if (get(col, row)) {
+          edges.set(col, row, 255);
+        }
+      }
+    }
+    return edges;
+  }
+
+  /**
+   * Returns the number of columns in the map.
+   *
+   * @return the width of the map
+   */
+  public int width() {
+    return width;
+  }
+
+  /**
+   * Returns the number of rows in the map.
+   *
+   * @return the height of the map
+   */
+  public int height() {
+    return height;
+  }
+
+  /**
+   * Checks whether pixel (col, row) is white.
+   *
+   * @param col the column of the pixel
+   * @param row the row of the pixel
+   * @return true if the pixel is an edge, else false
+   */
+  public boolean get(int col, int row) {
+    return (words[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+  }
+
+  /**
+   * Sets pixel (col, row) to white.
+   *
+   * @param col the column of the pixel
+   * @param row the row of the pixel
+   */
+  public void set(int col, int row) {
+    words[row * wordsPerRow + (col >>> 6)] |= 1L << col;
+  }
+
+  /**
+   * Returns length pixels of a row starting at column col, packed into a long
+   * so that bit i holds pixel (col + i, row). The pixels may be split over two
+   * words of the row, in which case they are shifted together.
+   *
+   * @param col the column of the first pixel
+   * @param row the row of the pixels
+   * @param length the number of pixels, at most 64
+   * @return the packed pixels
+   */
+  public long bits(int col, int row, int length) {
+    int index = row * wordsPerRow + (col >>> 6);
+    int shift = col & 63;
+    long bits = words[index] >>> shift;
+    if (shift != 0 && shift + length > 64) {
+      bits |= words[index + 1] << (64 - shift);
+    }
+    return length == 64 ? bits : bits & ((1L << length) - 1);
+  }
+
+  /**
+   * Unit tests the BitEdgeMap class by packing the given picture of edges and
+   * showing the unpacked result.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    BitEdgeMap map =
+        fromRaster(GreyRaster.fromPicture(new Picture(args[0])));
+    StdOut.printf("%d-by-%d, %d bytes\n", map.width, map.height,
+        8 * map.words.length);
+    map.toRaster().toPicture().show();
+  }
+
+}
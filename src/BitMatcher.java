@@ -0,0 +1,64 @@
+/**
+ * The BitMatcher class compares spot masks with a bit-packed picture of edges.
+ * Each row of the block covered by a mask is read from a BitEdgeMap as a
+ * single long, and XOR-ed with the same row of the mask, so the number of
+ * pixels which differ in the row is the number of bits set in the result. The
+ * sum of differences is 255 times the total number of differing pixels, which
+ * is the same as the sum computed by SpotDetection.sumOfDifferences() for a
+ * picture of black and white edges.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class BitMatcher implements SpotMatcher {
+  private final BitEdgeMap edges; // the packed picture of edges
+
+  /**
+   * Creates a matcher for the given picture of edges.
+   *
+   * @param edges the raster of edges, containing only 0 and 255
+   */
+  public BitMatcher(GreyRaster edges) {
+    this(BitEdgeMap.fromRaster(edges));
+  }
+
+  /**
+   * Creates a matcher for the given packed picture of edges.
+   *
+   * @param edges the packed map of edges
+   */
+  public BitMatcher(BitEdgeMap edges) {
+    this.edges = edges;
+  }
+
+  @Override
+  public boolean matches(RingMask mask, int col, int row, int diff) {
+    int width = mask.width(); // at most 64, so each row fits in a long
+    int mismatches = 0;
+    boolean empty = true;
+    for (int j = 0; j < width; ++j) {
+      long block = edges.bits(col, row + j, width);
+      empty &= block == 0;
+      mismatches += Long.bitCount(block ^ mask.bits(j));
+      if (255 * mismatches >= diff) {
+        return false; // can't be a spot anymore
+      }
+    }
+    return !empty;
+  }
+
+  /**
+   * Unit tests the BitMatcher class by counting the spots in the given picture
+   * of edges with both the original and the bit-packed matcher.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster edges = GreyRaster.fromPicture(new Picture(args[0]));
+    int r1 = Integer.parseInt(args[1]);
+    int r2 = Integer.parseInt(args[2]);
+    SpotDetection.detectSpots(edges, r1, r2, new BlockMatcher(edges));
+    SpotDetection.detectSpots(edges, r1, r2, new BitMatcher(edges));
+  }
+
+}
@@ -0,0 +1,48 @@
+/**
+ * The BlockMatcher class is the original way of matching a spot mask against
+ * a picture of edges. It copies the block of pixels covered by the mask, skips
+ * it if every pixel is black and otherwise adds up the differences between
+ * every pixel in the block and the mask. It is slow, but is kept as the
+ * reference which the other matchers must agree with.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class BlockMatcher implements SpotMatcher {
+  private final GreyRaster edges; // the picture of edges
+  private RingMask current; // the mask which maskArray was copied from
+  private int[][] maskArray; // the current mask as a 2D array
+
+  /**
+   * Creates a matcher for the given picture of edges.
+   *
+   * @param edges the raster of edges
+   */
+  public BlockMatcher(GreyRaster edges) {
+    this.edges = edges;
+  }
+
+  @Override
+  public void prepare(RingMask mask) {
+    if (mask != current) {
+      maskArray = mask.toArray();
+      current = mask;
+    }
+  }
+
+  @Override
+  public boolean matches(RingMask mask, int col, int row, int diff) {
+    prepare(mask);
+    int maskWidth = mask.width();
+    int[][] imageBlock = SpotDetection.getBlock(edges, maskWidth, col, row);
+    int max = SpotDetection.getMax(imageBlock, maskWidth);
+    if (max == 0) {
+      return false; // every pixel in image block is black
+    }
+    // normalise(imageBlock, maskWidth, max); // TODO is this necessary?
+    int sum =
+        SpotDetection.sumOfDifferences(imageBlock, maskArray, maskWidth);
+    return sum < diff;
+  }
+
+}
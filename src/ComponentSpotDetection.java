@@ -0,0 +1,318 @@
+import java.util.Arrays;
+
+/**
+ * The ComponentSpotDetection class counts spots without using masks. The edge
+ * of each spot is a ring of white pixels in the picture of edges, so every
+ * group of white pixels which touch each other (a connected component) is
+ * found, and the groups which are shaped like a ring of the right size are
+ * counted as spots. This takes time proportional to the number of pixels in
+ * the picture, no matter how many radii are checked, so it can be used to
+ * quickly screen very large pictures before using the slower mask matching.
+ * <p>
+ * The components are labelled in two passes. The first pass gives each white
+ * pixel the label of a white neighbour above or to the left of it (using the
+ * 8 pixels around it), and records in a union-find structure that labels
+ * which meet are the same component. The second pass replaces every label by
+ * the label of its component and collects the size and bounding box of each
+ * component.
+ * <p>
+ * A component is counted as a spot if its bounding box is roughly square,
+ * its radius is between r1 and r2, its number of pixels is close to the
+ * number of pixels in a ring of that radius and it encloses a hole, like a
+ * ring: the black pixels of its bounding box are flood-filled from outside the
+ * box, and its center pixel must be black and not reached by the fill.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class ComponentSpotDetection {
+  /** The largest ratio between the longer and shorter side of a spot. */
+  public static final double MAX_ASPECT = 1.5;
+  /** The fewest pixels per pixel of circumference, for broken rings. */
+  public static final double MIN_FILL = 0.5;
+  /** The most pixels per pixel of circumference, for thick rings. */
+  public static final double MAX_FILL = 3.0;
+
+  /**
+   * Finds the root of the component containing label x, halving the path to
+   * it on the way.
+   *
+   * @param parent the union-find parent of each label
+   * @param x the label
+   * @return the root label of the component
+   */
+  private static int find(int[] parent, int x) {
+    while (parent[x] != x) {
+      parent[x] = parent[parent[x]];
+      x = parent[x];
+    }
+    return x;
+  }
+
+  /**
+   * Joins the components containing labels a and b. The smaller root becomes
+   * the root of both, so that roots are always the first label given to a
+   * component.
+   *
+   * @param parent the union-find parent of each label
+   * @param a the first label
+   * @param b the second label
+   */
+  private static void union(int[] parent, int a, int b) {
+    int rootA = find(parent, a);
+    int rootB = find(parent, b);
+    if (rootA < rootB) {
+      parent[rootB] = rootA;
+    } else if (rootB < rootA) {
+      parent[rootA] = rootB;
+    }
+  }
+
+  /**
+   * Merges the label of a neighbouring pixel into the label of the current
+   * pixel.
+   *
+   * @param parent the union-find parent of each label
+   * @param current the label of the current pixel so far, or 0 if none
+   * @param neighbour the label of the neighbour, or 0 if it is black
+   * @return the label of the current pixel
+   */
+  private static int merge(int[] parent, int current, int neighbour) {
+    if (neighbour == 0) {
+      return current;
+    } else if (current == 0) {
+      return neighbour;
+    }
+    union(parent, current, neighbour);
+    return current;
+  }
+
+  /**
+   * Labels the connected components of white pixels in the picture of edges.
+   * Black pixels get the label 0 and the components are numbered from 1, in
+   * the order their top left pixel is reached row by row.
+   *
+   * @param edges the raster of edges
+   * @param labels the array where the label of pixel (col, row) is written at
+   *        index row * width + col
+   * @return the number of components
+   */
+  public static int label(GreyRaster edges, int[] labels) {
+    int width = edges.width();
+    int height = edges.height();
+    int[] parent = new int[16];
+    int next = 1;
+    // first pass: provisional labels, and which of them meet
+    for (int j = 0; j < height; ++j) {
+      for (int i = 0; i < width; ++i) {
+        int index = j * width + i;
+        labels[index] = 0;
+        if (edges.get(i, j) == 0) {
+          continue;
+        }
+        int current = 0;
+        if (i > 0) { // left
+          current = merge(parent, current, labels[index - 1]);
+        }
+        if (j > 0) { // above left, above and above right
+          if (i > 0) {
+            current = merge(parent, current, labels[index - width - 1]);
+          }
+          current = merge(parent, current, labels[index - width]);
+          if (i < width - 1) {
+            current = merge(parent, current, labels[index - width + 1]);
+          }
+        }
+        if (current == 0) { // a new component
+          if (next == parent.length) {
+            parent = Arrays.copyOf(parent, 2 * next);
+          }
+          parent[next] = next;
+          current = next++;
+        }
+        labels[index] = current;
+      }
+    }
+    // second pass: number the components in the order they were found
+    int[] component = new int[next];
+    int count = 0;
+    for (int k = 1; k < next; ++k) {
+      int root = find(parent, k);
+      component[k] = root == k ? ++count : component[root];
+    }
+    for (int index = 0; index < width * height; ++index) {
+      labels[index] = component[labels[index]];
+    }
+    return count;
+  }
+
+  /**
+   * Checks whether a component encloses a hole around a pixel. The black
+   * pixels of the bounding box are flood-filled from a frame around the box,
+   * moving only up, down, left and right. The fill is kept one pixel away
+   * from the component, so it can't leak into the hole through the small
+   * gaps a noisy ring has. The component encloses the pixel if the pixel
+   * isn't part of it and the fill never reaches it. The scratch arrays are
+   * shared by every component, so they must hold the box and its frame.
+   *
+   * @param labels the label of each pixel, at index row * width + col
+   * @param width the width of the picture
+   * @param c the label of the component
+   * @param minCol the leftmost column of the bounding box
+   * @param minRow the top row of the bounding box
+   * @param boxWidth the width of the bounding box
+   * @param boxHeight the height of the bounding box
+   * @param col the column of the pixel
+   * @param row the row of the pixel
+   * @param blocked scratch for the pixels within 1 pixel of the component
+   * @param seen scratch for the pixels reached by the fill
+   * @param stack scratch for the pixels still to be filled from
+   * @return true if the pixel is in a hole of the component, else false
+   */
+  private static boolean enclosesHole(int[] labels, int width, int c,
+      int minCol, int minRow, int boxWidth, int boxHeight, int col, int row,
+      boolean[] blocked, boolean[] seen, int[] stack) {
+    int w = boxWidth + 4; // the box and a frame 2 pixels wide around it
+    int h = boxHeight + 4;
+    Arrays.fill(blocked, 0, w * h, false);
+    Arrays.fill(seen, 0, w * h, false);
+    for (int j = 2; j < h - 2; ++j) {
+      for (int i = 2; i < w - 2; ++i) {
+        if (labels[(minRow + j - 2) * width + minCol + i - 2] != c) {
+          continue;
+        } else if (minRow + j - 2 == row && minCol + i - 2 == col) {
+          return false; // the pixel is part of the component
+        }
+        for (int dj = -1; dj <= 1; ++dj) {
+          for (int di = -1; di <= 1; ++di) {
+            blocked[(j + dj) * w + i + di] = true;
+          }
+        }
+      }
+    }
+    int target = (row - minRow + 2) * w + col - minCol + 2;
+    int top = 0;
+    seen[0] = true; // the outer frame is never blocked, so start at a corner
+    stack[top++] = 0;
+    while (top > 0) {
+      int k = stack[--top];
+      int i = k % w;
+      if ((i > 0 && k - 1 == target) || (i < w - 1 && k + 1 == target)
+          || k - w == target || k + w == target) {
+        return false;
+      }
+      if (i > 0 && !seen[k - 1] && !blocked[k - 1]) { // left
+        seen[k - 1] = true;
+        stack[top++] = k - 1;
+      }
+      if (i < w - 1 && !seen[k + 1] && !blocked[k + 1]) { // right
+        seen[k + 1] = true;
+        stack[top++] = k + 1;
+      }
+      if (k >= w && !seen[k - w] && !blocked[k - w]) { // up
+        seen[k - w] = true;
+        stack[top++] = k - w;
+      }
+      if (k < w * (h - 1) && !seen[k + w] && !blocked[k + w]) { // down
+        seen[k + w] = true;
+        stack[top++] = k + w;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Finds the spots in the picture of edges, paints their pixels white in a
+   * new raster and stores their centers and radii in the registry.
+   *
+   * @param edges the raster containing edges
+   * @param r1 the minimum radius of a spot
+   * @param r2 the maximum radius of a spot
+   * @param registry where the spots which are found are stored
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2,
+      SpotRegistry registry) {
+    int width = edges.width();
+    int height = edges.height();
+    int[] labels = new int[width * height];
+    int count = label(edges, labels);
+    int[] size = new int[count + 1];
+    int[] minCol = new int[count + 1];
+    int[] maxCol = new int[count + 1];
+    int[] minRow = new int[count + 1];
+    int[] maxRow = new int[count + 1];
+    Arrays.fill(minCol, width);
+    Arrays.fill(minRow, height);
+    for (int j = 0; j < height; ++j) {
+      for (int i = 0; i < width; ++i) {
+        int c = labels[j * width + i];
+        size[c]++;
+        minCol[c] = Math.min(minCol[c], i);
+        maxCol[c] = Math.max(maxCol[c], i);
+        minRow[c] = Math.min(minRow[c], j);
+        maxRow[c] = Math.max(maxRow[c], j);
+      }
+    }
+    // first the checks which only need the size and bounding box, so the
+    // scratch arrays of enclosesHole() fit the largest box left
+    boolean[] isSpot = new boolean[count + 1];
+    int frame = 0;
+    for (int c = 1; c <= count; ++c) {
+      int boxWidth = maxCol[c] - minCol[c] + 1;
+      int boxHeight = maxRow[c] - minRow[c] + 1;
+      double radius = (boxWidth + boxHeight) / 4.0;
+      double fill = size[c] / (2 * Math.PI * radius);
+      isSpot[c] = radius >= r1 && radius <= r2
+          && Math.max(boxWidth, boxHeight)
+              <= MAX_ASPECT * Math.min(boxWidth, boxHeight)
+          && fill >= MIN_FILL && fill <= MAX_FILL;
+      if (isSpot[c]) {
+        frame = Math.max(frame, (boxWidth + 4) * (boxHeight + 4));
+      }
+    }
+    boolean[] blocked = new boolean[frame];
+    boolean[] seen = new boolean[frame];
+    int[] stack = new int[frame];
+    int counter = 0;
+    for (int c = 1; c <= count; ++c) {
+      if (!isSpot[c]) {
+        continue;
+      }
+      int boxWidth = maxCol[c] - minCol[c] + 1;
+      int boxHeight = maxRow[c] - minRow[c] + 1;
+      int centreCol = (minCol[c] + maxCol[c]) / 2;
+      int centreRow = (minRow[c] + maxRow[c]) / 2;
+      isSpot[c] = enclosesHole(labels, width, c, minCol[c], minRow[c],
+          boxWidth, boxHeight, centreCol, centreRow, blocked, seen, stack);
+      if (isSpot[c]) {
+        counter++;
+        registry.addSpot(centreCol, centreRow,
+            (int) Math.round((boxWidth + boxHeight) / 4.0));
+      }
+    }
+    GreyRaster spots = new GreyRaster(width, height);
+    for (int j = 0; j < height; ++j) {
+      for (int i = 0; i < width; ++i) {
+        if (isSpot[labels[j * width + i]]) {
+          spots.set(i, j, 255);
+        }
+      }
+    }
+    StdOut.println(counter);
+    return spots;
+  }
+
+  /**
+   * Unit tests the ComponentSpotDetection class by counting the spots in the
+   * given picture of edges and showing them.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster edges = GreyRaster.fromPicture(new Picture(args[0]));
+    detectSpots(edges, Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+        new SpotRegistry()).toPicture().show();
+  }
+
+}
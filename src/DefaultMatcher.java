@@ -0,0 +1,82 @@
+/**
+ * The DefaultMatcher class is the matcher which spot detection uses when no
+ * other is given. A BitMatcher compares the masks which fit in a long (at
+ * most 64 cells wide, so radii up to 31) with the edges, and a SparseMatcher
+ * compares the wider ones. Each of them is only built the first time a mask
+ * which needs it is prepared, so a picture searched only with small masks
+ * never builds the summed-area table, and the other way round.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class DefaultMatcher implements SpotMatcher {
+  /** The widest mask which a BitMatcher can compare. */
+  public static final int MAX_BIT_WIDTH = 64;
+
+  private final GreyRaster edges; // the picture of edges
+  private SummedAreaTable whitePixels; // shared with the SparseMatcher
+  private BitMatcher bits; // for the narrow masks, once needed
+  private SparseMatcher sparse; // for the wide masks, once needed
+
+  /**
+   * Creates a matcher for the given picture of edges.
+   *
+   * @param edges the raster of edges, containing only 0 and 255
+   */
+  public DefaultMatcher(GreyRaster edges) {
+    this(edges, null);
+  }
+
+  /**
+   * Creates a matcher for the given picture of edges which shares the given
+   * summed-area table of it with its SparseMatcher.
+   *
+   * @param edges the raster of edges, containing only 0 and 255
+   * @param whitePixels the summed-area table of the raster of edges, or null
+   *        to build one if it is needed
+   */
+  public DefaultMatcher(GreyRaster edges, SummedAreaTable whitePixels) {
+    this.edges = edges;
+    this.whitePixels = whitePixels;
+  }
+
+  /**
+   * Returns the matcher for a mask, building it if it hasn't been built yet.
+   *
+   * @param mask the spot mask
+   * @return the BitMatcher if the mask is at most MAX_BIT_WIDTH wide, else
+   *         the SparseMatcher
+   */
+  private SpotMatcher matcher(RingMask mask) {
+    if (mask.width() <= MAX_BIT_WIDTH) {
+      if (bits == null) {
+        bits = new BitMatcher(edges);
+      }
+      return bits;
+    }
+    if (sparse == null) {
+      if (whitePixels == null) {
+        whitePixels = new SummedAreaTable(edges);
+      }
+      sparse = new SparseMatcher(edges, whitePixels);
+    }
+    return sparse;
+  }
+
+  /**
+   * Builds the matcher for the mask if needed and prepares it. This is done
+   * on one thread, before matches() is called from any.
+   *
+   * @param mask the spot mask which is about to be used
+   */
+  @Override
+  public void prepare(RingMask mask) {
+    matcher(mask).prepare(mask);
+  }
+
+  @Override
+  public boolean matches(RingMask mask, int col, int row, int diff) {
+    return matcher(mask).matches(mask, col, row, diff);
+  }
+
+}
@@ -0,0 +1,251 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The DistanceSpotDetection class finds spots by measuring how far the points
+ * of a circle are from the nearest edge. The distance from every pixel to the
+ * nearest white pixel in the picture of edges is computed once, in time
+ * proportional to the number of pixels (the Euclidean distance transform of
+ * Felzenszwalb and Huttenlocher). A circle of radius r around a center then
+ * only needs the distances at the points of the circle to be looked up,
+ * instead of comparing every pixel of a (2r+1) by (2r+1) mask.
+ * <p>
+ * A circle is a spot if the average distance from its points to an edge is at
+ * most MAX_MEAN. The distance of each point is capped at MAX_GAP, so that a
+ * ring with a small break in it still counts. The nearest edge to the center
+ * of a spot is its ring, so only the radii within TOLERANCE of the distance at
+ * the center are tried, which also rejects centers covered by edges. Each
+ * center keeps only its best radius, and only centers whose best average
+ * distance is smaller than at the 8 centers around them are passed on, as the
+ * peaks of HoughSpotDetection are.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class DistanceSpotDetection {
+  /**
+   * The largest average distance from the circle to the edges of a spot: the
+   * pixels of a drawn circle are up to half a pixel from the true circle.
+   */
+  public static final double MAX_MEAN = 0.5;
+  /**
+   * The largest distance counted for a point on the circle, the width of the
+   * widest ring drawn by the masks, so a point off the ring costs at most as
+   * much as a point the masks would miss.
+   */
+  public static final double MAX_GAP = 3.0;
+  /**
+   * How much the radius may differ from the distance at the center: the ring
+   * is two pixels thick, as the pixels on both sides of a boundary are edges,
+   * and half a pixel more for rounding.
+   */
+  public static final double TOLERANCE = 1.5;
+
+  /**
+   * Returns the position where the parabolas rooted at p and q cross.
+   *
+   * @param f the height of the root of each parabola
+   * @param p the position of the first parabola
+   * @param q the position of the second parabola
+   * @return the position where they cross
+   */
+  private static double intersection(double[] f, int p, int q) {
+    return ((f[q] + (double) q * q) - (f[p] + (double) p * p))
+        / (2 * q - 2 * p);
+  }
+
+  /**
+   * Computes the squared distance from each point of a line to the nearest
+   * point where f is 0, in place (the lower envelope of parabolas).
+   *
+   * @param f the values along the line: 0 at edges, else a large number; they
+   *        are replaced by the squared distances
+   * @param n the length of the line
+   * @param v the positions of the parabolas, with room for n
+   * @param z the boundaries between the parabolas, with room for n + 1
+   * @param d where the result is built, with room for n
+   */
+  private static void transform(double[] f, int n, int[] v, double[] z,
+      double[] d) {
+    int k = 0;
+    v[0] = 0;
+    z[0] = Double.NEGATIVE_INFINITY;
+    z[1] = Double.POSITIVE_INFINITY;
+    for (int q = 1; q < n; ++q) {
+      double s = intersection(f, v[k], q);
+      while (s <= z[k]) { // parabola v[k] is never the lowest
+        k--;
+        s = intersection(f, v[k], q);
+      }
+      k++;
+      v[k] = q;
+      z[k] = s;
+      z[k + 1] = Double.POSITIVE_INFINITY;
+    }
+    k = 0;
+    for (int q = 0; q < n; ++q) {
+      while (z[k + 1] < q) {
+        k++;
+      }
+      d[q] = (double) (q - v[k]) * (q - v[k]) + f[v[k]];
+    }
+    System.arraycopy(d, 0, f, 0, n);
+  }
+
+  /**
+   * Returns the Euclidean distance from each pixel to the nearest white pixel
+   * in the picture of edges. Pixels are stored at index row * width + col. If
+   * there are no white pixels every distance is infinite.
+   *
+   * @param edges the raster of edges
+   * @return the distance of each pixel
+   */
+  public static float[] distances(GreyRaster edges) {
+    int width = edges.width();
+    int height = edges.height();
+    int n = Math.max(width, height);
+    double[] f = new double[n];
+    double[] d = new double[n];
+    double[] z = new double[n + 1];
+    int[] v = new int[n];
+    double far = 1e20; // further than any pixel
+    double[] squared = new double[width * height];
+    for (int i = 0; i < width; ++i) { // down each column
+      for (int j = 0; j < height; ++j) {
+        f[j] = edges.get(i, j) != 0 ? 0 : far;
+      }
+      transform(f, height, v, z, d);
+      for (int j = 0; j < height; ++j) {
+        squared[j * width + i] = f[j];
+      }
+    }
+    float[] result = new float[width * height];
+    for (int j = 0; j < height; ++j) { // then along each row
+      System.arraycopy(squared, j * width, f, 0, width);
+      transform(f, width, v, z, d);
+      for (int i = 0; i < width; ++i) {
+        result[j * width + i] = f[i] >= far ? Float.POSITIVE_INFINITY
+            : (float) Math.sqrt(f[i]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the average distance to an edge of the points on a circle, with
+   * each distance capped at MAX_GAP. Points outside the picture count as
+   * MAX_GAP.
+   *
+   * @param distances the distance of each pixel to the nearest edge
+   * @param width the width of the picture
+   * @param height the height of the picture
+   * @param circle the offsets of the points on the circle
+   * @param col the column of the center
+   * @param row the row of the center
+   * @return the average distance
+   */
+  public static double score(float[] distances, int width, int height,
+      int[][] circle, int col, int row) {
+    double sum = 0;
+    for (int k = 0; k < circle[0].length; ++k) {
+      int i = col + circle[0][k];
+      int j = row + circle[1][k];
+      if (i < 0 || j < 0 || i >= width || j >= height) {
+        sum += MAX_GAP;
+      } else {
+        sum += Math.min(MAX_GAP, distances[j * width + i]);
+      }
+    }
+    return sum / circle[0].length;
+  }
+
+  /**
+   * Checks whether the average distance at a center is smaller than at the 8
+   * centers around it. Of two equal neighbours the first one is the peak.
+   *
+   * @param best the smallest average distance at each center
+   * @param width the width of the picture
+   * @param height the height of the picture
+   * @param index the index of the center
+   * @return true if the center is a peak, else false
+   */
+  private static boolean isPeak(double[] best, int width, int height,
+      int index) {
+    int col = index % width;
+    int row = index / width;
+    for (int j = Math.max(0, row - 1); j <= Math.min(height - 1, row + 1);
+        ++j) {
+      for (int i = Math.max(0, col - 1); i <= Math.min(width - 1, col + 1);
+          ++i) {
+        int other = j * width + i;
+        if (best[other] < best[index]
+            || (best[other] == best[index] && other < index)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Finds the spots in the picture of edges, paints the edges of the spots
+   * white in a new raster and stores their centers and radii in the registry.
+   *
+   * @param edges the raster containing edges
+   * @param r1 the minimum radius of a spot
+   * @param r2 the maximum radius of a spot
+   * @param registry where the spots which are found are stored
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2,
+      SpotRegistry registry) {
+    int width = edges.width();
+    int height = edges.height();
+    float[] distances = distances(edges);
+    int[][][] circles = new int[r2 - r1 + 1][][];
+    for (int r = r1; r <= r2; ++r) {
+      circles[r - r1] = PeakCounter.circle(r);
+    }
+    // the best (smallest) average distance at each center, and its radius
+    double[] best = new double[width * height];
+    int[] radius = new int[width * height];
+    for (int j = 0; j < height; ++j) {
+      for (int i = 0; i < width; ++i) {
+        int index = j * width + i;
+        double centre = distances[index];
+        int from = Math.max(r1, (int) Math.ceil(centre - TOLERANCE));
+        int to = Math.min(r2, (int) Math.floor(centre + TOLERANCE));
+        best[index] = Double.POSITIVE_INFINITY;
+        for (int r = from; r <= to; ++r) {
+          double mean = score(distances, width, height, circles[r - r1], i, j);
+          if (mean <= MAX_MEAN && mean < best[index]) {
+            best[index] = mean;
+            radius[index] = r;
+          }
+        }
+      }
+    }
+    // candidates as {-(average distance in millionths), radius, index}
+    List<long[]> peaks = new ArrayList<>();
+    for (int index = 0; index < width * height; ++index) {
+      if (best[index] <= MAX_MEAN && isPeak(best, width, height, index)) {
+        peaks.add(new long[] {-Math.round(1000000 * best[index]),
+            radius[index], index});
+      }
+    }
+    return PeakCounter.countPeaks(edges, peaks, registry);
+  }
+
+  /**
+   * Unit tests the DistanceSpotDetection class by counting the spots in the
+   * given picture of edges and showing them.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster edges = GreyRaster.fromPicture(new Picture(args[0]));
+    detectSpots(edges, Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+        new SpotRegistry()).toPicture().show();
+  }
+
+}
@@ -0,0 +1,102 @@
+import java.util.Random;
+
+/**
+ * The EdgeBenchmark class measures how fast the edge detection kernels run on
+ * pictures of 1, 8 and 24 megapixels, timing each with Bench. The pictures
+ * are made of random blocks of grey with noise, so that some tiles are
+ * uniform and some are not.
+ * <p>
+ * The kernels compared are the original per-pixel detect() with its dx and dy
+ * arrays (kept here as legacyDetect()) and getEdgeDetected() with the row
+ * kernel and uniform tiles.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class EdgeBenchmark {
+  /**
+   * The edge test as it was first written, which allocates two arrays for
+   * every pixel. Used as the baseline.
+   *
+   * @param arr the raster of grey values
+   * @param col the column of the pixel
+   * @param row the row of the pixel
+   * @param epsilon the threshold value
+   * @return 255 if the pixel is an edge, else 0
+   */
+  private static int legacyDetect(GreyRaster arr, int col, int row,
+      int epsilon) {
+    int[] dx = {1, -1, 0, 0};
+    int[] dy = {0, 0, 1, -1};
+    boolean edge = false;
+    for (int k = 0; k < 4 && !edge; ++k) {
+      edge |= (Math.abs(
+          arr.get(col, row) - arr.get(col + dx[k], row + dy[k])) > epsilon);
+    }
+    return edge ? 255 : 0;
+  }
+
+  /**
+   * Detects the edges of a raster with legacyDetect() for every pixel.
+   *
+   * @param pic the raster of grey values
+   * @param epsilon the threshold value
+   * @return the raster of edges
+   */
+  private static GreyRaster legacyEdges(GreyRaster pic, int epsilon) {
+    GreyRaster edges = new GreyRaster(pic.width(), pic.height());
+    for (int j = 1; j < pic.height() - 1; ++j) {
+      for (int i = 1; i < pic.width() - 1; ++i) {
+        edges.set(i, j, legacyDetect(pic, i, j, epsilon));
+      }
+    }
+    return edges;
+  }
+
+  /**
+   * Creates a picture of random grey blocks with noise.
+   *
+   * @param width the width of the picture
+   * @param height the height of the picture
+   * @param random the source of random numbers
+   * @return the picture
+   */
+  private static GreyRaster picture(int width, int height, Random random) {
+    GreyRaster pic = new GreyRaster(width, height);
+    int block = 64;
+    for (int y = 0; y < height; y += block) {
+      for (int x = 0; x < width; x += block) {
+        int grey = random.nextInt(256);
+        boolean noisy = random.nextBoolean();
+        for (int j = y; j < Math.min(height, y + block); ++j) {
+          for (int i = x; i < Math.min(width, x + block); ++i) {
+            int noise = noisy ? random.nextInt(64) - 32 : 0;
+            pic.set(i, j, Math.max(0, Math.min(255, grey + noise)));
+          }
+        }
+      }
+    }
+    return pic;
+  }
+
+  /**
+   * Benchmarks the edge detection kernels at 1, 8 and 24 megapixels with the
+   * given epsilon (20 if none is given).
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    int epsilon = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    int[][] sizes = {{1250, 800}, {3500, 2286}, {6000, 4000}};
+    Random random = new Random(42);
+    for (int[] size : sizes) {
+      GreyRaster pic = picture(size[0], size[1], random);
+      double megapixels = size[0] * (double) size[1] / 1e6;
+      Bench.measure("legacy detect()", megapixels,
+          () -> legacyEdges(pic, epsilon));
+      Bench.measure("getEdgeDetected", megapixels,
+          () -> EdgeDetection.getEdgeDetected(pic, epsilon));
+    }
+  }
+
+}
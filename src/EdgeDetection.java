@@ -8,6 +8,8 @@
  *
  */
 public class EdgeDetection {
+  /** The width of the tiles which are checked for edges before each pixel. */
+  public static final int TILE = 32;
 
   /**
    * Uses the Von Neumann neighborhood and ideas in Popovici's article to detect
@@ -16,22 +18,20 @@ public class EdgeDetection {
    * threshold value, and if they all are the central pixel is set to black,
    * otherwise white.
    * 
-   * @param arr the 2D array which represents the grey-scaled colors of the
+   * @param arr the raster which represents the grey-scaled colors of the
    *        image
-   * @param row the row of the pixel
    * @param col the column of the pixel
+   * @param row the row of the pixel
    * @param epsilon the threshold value
    * @return 255 (white) if central pixel is an edge, or 0 (black) if it is not
    *         an edge
    */
-  public static int detect(int[][] arr, int row, int col, int epsilon) {
-    int[] dx = {1, -1, 0, 0};
-    int[] dy = {0, 0, 1, -1};
-    boolean edge = false;
-    for (int k = 0; k < 4 && !edge; ++k) {
-      edge |=
-          (Math.abs(arr[row][col] - arr[row + dx[k]][col + dy[k]]) > epsilon);
-    }
+  public static int detect(GreyRaster arr, int col, int row, int epsilon) {
+    int centre = arr.get(col, row);
+    boolean edge = Math.abs(centre - arr.get(col + 1, row)) > epsilon
+        || Math.abs(centre - arr.get(col - 1, row)) > epsilon
+        || Math.abs(centre - arr.get(col, row + 1)) > epsilon
+        || Math.abs(centre - arr.get(col, row - 1)) > epsilon;
     if (edge) {
       return 255; // white
     } else {
@@ -39,31 +39,90 @@ public class EdgeDetection {
     }
   }
 
+  /**
+   * Detects the edges in a run of pixels of one row, reading and writing flat
+   * arrays of grey values. The loop has no branches and doesn't allocate
+   * anything, so the JIT compiler can turn it into vector instructions: each
+   * of the four differences is subtracted from epsilon, which is negative
+   * only if that difference is too large, and the sign bit of the four
+   * results OR-ed together is spread over the whole output byte. Every pixel
+   * in the run must have all four neighbours in the array.
+   * 
+   * @param data the grey values of the picture
+   * @param index the index in data of the first pixel in the run
+   * @param stride the distance in data between two rows
+   * @param out the array where the edges (0 or 255) are written
+   * @param outIndex the index in out of the first pixel in the run
+   * @param length the number of pixels in the run
+   * @param epsilon the threshold value
+   */
+  public static void detectRun(byte[] data, int index, int stride, byte[] out,
+      int outIndex, int length, int epsilon) {
+    for (int n = 0; n < length; ++n) {
+      int k = index + n;
+      int centre = data[k] & 0xFF;
+      int edge = (epsilon - Math.abs(centre - (data[k + 1] & 0xFF)))
+          | (epsilon - Math.abs(centre - (data[k - 1] & 0xFF)))
+          | (epsilon - Math.abs(centre - (data[k + stride] & 0xFF)))
+          | (epsilon - Math.abs(centre - (data[k - stride] & 0xFF)));
+      out[outIndex + n] = (byte) (edge >> 31); // -1 is white (255)
+    }
+  }
+
   /**
    * Iterates over all the pixels in the input picture and creates a new picture
    * of the edges by calling detect(). This picture of the edges is then
    * returned. Border pixels are not checked.
+   * <p>
+   * The picture is checked in tiles of TILE by TILE pixels first. If the grey
+   * values in a tile and the pixels around it differ by at most epsilon, none
+   * of the pixels in the tile can be an edge, so the tile is left black
+   * without looking at the neighbours of each pixel.
    * 
-   * @param pic the grey-scaled, noise reduced input picture
+   * @param pic the grey-scaled, noise reduced input raster
    * @param epsilon the threshold value for determining if central pixels are
    *        edges
-   * @return the new picture of the edges in the input picture
+   * @return the new raster of the edges in the input raster
    */
-  public static Picture getEdgeDetected(Picture pic, int epsilon) {
+  public static GreyRaster getEdgeDetected(GreyRaster pic, int epsilon) {
+    GreyRaster newArr = new GreyRaster(pic.width(), pic.height());
+    detectRows(pic, newArr, 1, pic.height() - 1, epsilon); // borders black
+    return newArr;
+  }
+
+  /**
+   * Detects the edges in a band of rows, in tiles as described for
+   * getEdgeDetected(). Only the rows of the band are written, and only the
+   * band and the rows above and below it are read, so the edges of several
+   * bands can be detected into the same raster at once. The first and last
+   * pixel of each row are left as they are (black in a new raster).
+   * 
+   * @param pic the grey-scaled, noise reduced input raster
+   * @param out the raster where the edges are written
+   * @param fromRow the first row of the band, at least 1
+   * @param toRow the row after the last row of the band, at most height - 1
+   * @param epsilon the threshold value for determining if central pixels are
+   *        edges
+   */
+  public static void detectRows(GreyRaster pic, GreyRaster out, int fromRow,
+      int toRow, int epsilon) {
     int width = pic.width();
-    int height = pic.height();
-    int[][] oldArr = Utility.getArrFromPic(pic);
-    int[][] newArr = new int[width][height];
-    for (int i = 0; i < width; ++i) {
-      for (int j = 0; j < height; ++j) {
-        if (i == 0 || j == 0 || i == width - 1 || j == height - 1) {
-          newArr[i][j] = 0; // don't include borders
-        } else {
-          newArr[i][j] = detect(oldArr, i, j, epsilon);
+    for (int y0 = fromRow; y0 < toRow; y0 += TILE) {
+      int y1 = Math.min(y0 + TILE, toRow);
+      for (int x0 = 1; x0 < width - 1; x0 += TILE) {
+        int x1 = Math.min(x0 + TILE, width - 1);
+        if (pic.isUniform(x0 - 1, y0 - 1, x1 - x0 + 2, y1 - y0 + 2,
+            epsilon)) {
+          out.fill(x0, y0, x1 - x0, y1 - y0, 0); // no edges in this tile
+          continue;
+        }
+        for (int j = y0; j < y1; ++j) {
+          PixelKernels.DEFAULT.detectRun(pic.data(), pic.index(x0, j),
+              pic.stride(), out.data(), out.index(x0, j), x1 - x0,
+              epsilon);
         }
       }
     }
-    return Utility.getPicFromArr(newArr);
   }
 
   /**
@@ -73,7 +132,8 @@ public class EdgeDetection {
    * @param args the command line arguments
    */
   public static void main(String[] args) {
-    getEdgeDetected(new Picture(args[0]), Integer.parseInt(args[1])).show();
+    getEdgeDetected(GreyRaster.fromPicture(new Picture(args[0])),
+        Integer.parseInt(args[1])).toPicture().show();
   }
 
 }
@@ -0,0 +1,297 @@
+import java.util.Arrays;
+
+/**
+ * The FftMatcher class finds the overlap between a spot mask and every block
+ * of the picture of edges at once, using the fast Fourier transform. The
+ * overlap at every position is the cross-correlation of the picture and the
+ * mask, which is the inverse transform of the transform of the picture times
+ * the complex conjugate of the transform of the mask. The transform of the
+ * picture is computed once and reused for every mask, so each radius costs a
+ * couple of transforms no matter how big the mask is, while moving the mask
+ * over the picture costs (2r + 1)^2 per position.
+ * <p>
+ * The sum of differences for a block is then found in the same way as in
+ * SparseMatcher: 255 * (whiteCount(block) + whiteCount(mask) - 2 * overlap),
+ * with the white pixels in the block counted by a summed-area table.
+ * <p>
+ * The picture is padded with black to a power of two in each direction. Since
+ * the mask always fits inside the picture at the positions which are checked,
+ * the transforms wrapping around never changes the overlap at those positions.
+ * Both the picture and the masks are real, so two rows are transformed at once
+ * by putting the second row in the imaginary part. This needs four arrays of
+ * doubles the size of the padded picture.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class FftMatcher implements SpotMatcher {
+  private final GreyRaster edges; // the picture of edges
+  private final SummedAreaTable whitePixels; // counts white pixels in blocks
+  private final int cols; // padded width, a power of two
+  private final int rows; // padded height, a power of two
+  private final double[] edgeRe; // transform of the picture, real part
+  private final double[] edgeIm; // transform of the picture, imaginary part
+  private final double[] workRe; // transform of the mask, then the overlap
+  private final double[] workIm;
+  private final double[] colRe; // a single column, for the column transforms
+  private final double[] colIm;
+  private final double[][] rowTwiddles; // cos and sin for transforms of rows
+  private final double[][] colTwiddles; // cos and sin for transforms of cols
+  private final int[] overlap; // overlap of the current mask at each position
+  private RingMask current; // the mask which overlap was computed for
+
+  /**
+   * Creates a matcher for the given picture of edges, and computes the
+   * transform of the picture.
+   *
+   * @param edges the raster of edges, containing only 0 and 255
+   */
+  public FftMatcher(GreyRaster edges) {
+    this.edges = edges;
+    this.whitePixels = new SummedAreaTable(edges);
+    this.cols = powerOfTwo(edges.width());
+    this.rows = powerOfTwo(edges.height());
+    this.edgeRe = new double[cols * rows];
+    this.edgeIm = new double[cols * rows];
+    this.workRe = new double[cols * rows];
+    this.workIm = new double[cols * rows];
+    this.colRe = new double[rows];
+    this.colIm = new double[rows];
+    this.rowTwiddles = twiddles(cols);
+    this.colTwiddles = twiddles(rows);
+    this.overlap = new int[edges.width() * edges.height()];
+    for (int j = 0; j < edges.height(); ++j) {
+      for (int i = 0; i < edges.width(); ++i) {
+        if (edges.get(i, j) != 0) {
+          edgeRe[j * cols + i] = 1;
+        }
+      }
+    }
+    forward(edgeRe, edgeIm, edges.height());
+  }
+
+  /**
+   * Returns the smallest power of two which is at least n.
+   *
+   * @param n the number to round up
+   * @return the power of two
+   */
+  private static int powerOfTwo(int n) {
+    int power = 1;
+    while (power < n) {
+      power <<= 1;
+    }
+    return power;
+  }
+
+  /**
+   * Computes cos(2 pi k / n) and sin(2 pi k / n) for k below n / 2.
+   *
+   * @param n the length of the transform
+   * @return the cosines and sines
+   */
+  private static double[][] twiddles(int n) {
+    double[][] table = new double[2][Math.max(1, n / 2)];
+    for (int k = 0; k < n / 2; ++k) {
+      table[0][k] = Math.cos(2 * Math.PI * k / n);
+      table[1][k] = Math.sin(2 * Math.PI * k / n);
+    }
+    return table;
+  }
+
+  /**
+   * Transforms n complex numbers stored from index offset in place, using the
+   * iterative radix-2 algorithm.
+   *
+   * @param re the real parts
+   * @param im the imaginary parts
+   * @param offset the index of the first number
+   * @param n the number of values, a power of two
+   * @param twiddles the table created by twiddles(n)
+   * @param inverse true for the inverse transform (without scaling)
+   */
+  private static void fft(double[] re, double[] im, int offset, int n,
+      double[][] twiddles, boolean inverse) {
+    for (int i = 1, j = 0; i < n; ++i) { // bit reversal permutation
+      int bit = n >> 1;
+      for (; (j & bit) != 0; bit >>= 1) {
+        j ^= bit;
+      }
+      j ^= bit;
+      if (i < j) {
+        double t = re[offset + i];
+        re[offset + i] = re[offset + j];
+        re[offset + j] = t;
+        t = im[offset + i];
+        im[offset + i] = im[offset + j];
+        im[offset + j] = t;
+      }
+    }
+    double sign = inverse ? 1 : -1;
+    for (int len = 2; len <= n; len <<= 1) {
+      int half = len >> 1;
+      int step = n / len;
+      for (int start = offset; start < offset + n; start += len) {
+        for (int k = 0; k < half; ++k) {
+          double wr = twiddles[0][k * step];
+          double wi = sign * twiddles[1][k * step];
+          int a = start + k;
+          int b = a + half;
+          double xr = re[b] * wr - im[b] * wi;
+          double xi = re[b] * wi + im[b] * wr;
+          re[b] = re[a] - xr;
+          im[b] = im[a] - xi;
+          re[a] += xr;
+          im[a] += xi;
+        }
+      }
+    }
+  }
+
+  /**
+   * Transforms every column of the padded picture in place.
+   *
+   * @param re the real parts
+   * @param im the imaginary parts
+   * @param inverse true for the inverse transform
+   */
+  private void transformColumns(double[] re, double[] im, boolean inverse) {
+    for (int i = 0; i < cols; ++i) {
+      for (int j = 0; j < rows; ++j) {
+        colRe[j] = re[j * cols + i];
+        colIm[j] = im[j * cols + i];
+      }
+      fft(colRe, colIm, 0, rows, colTwiddles, inverse);
+      for (int j = 0; j < rows; ++j) {
+        re[j * cols + i] = colRe[j];
+        im[j * cols + i] = colIm[j];
+      }
+    }
+  }
+
+  /**
+   * Computes the 2D transform of a real picture stored in re, in place. Only
+   * the first used rows can be non-zero. Pairs of rows are transformed
+   * together, as z = a + ib, and then separated again using
+   * A[k] = (Z[k] + conj(Z[n - k])) / 2 and B[k] = (Z[k] - conj(Z[n - k])) / 2i.
+   *
+   * @param re the real picture, replaced by the real part of the transform
+   * @param im all zero, replaced by the imaginary part of the transform
+   * @param used the number of rows which aren't all zero
+   */
+  private void forward(double[] re, double[] im, int used) {
+    for (int j = 0; j < used; j += 2) {
+      int a = j * cols;
+      int b = a + cols;
+      if (j + 1 < rows) {
+        System.arraycopy(re, b, im, a, cols); // z = a + ib
+        Arrays.fill(re, b, b + cols, 0);
+      }
+      fft(re, im, a, cols, rowTwiddles, false);
+      if (j + 1 >= rows) {
+        continue; // a single row, already transformed
+      }
+      for (int k = 0; k <= cols / 2; ++k) {
+        int m = (cols - k) & (cols - 1);
+        double zr = re[a + k];
+        double zi = im[a + k];
+        double cr = re[a + m]; // conj(Z[n - k]) = cr - i ci
+        double ci = -im[a + m];
+        re[a + k] = (zr + cr) / 2;
+        im[a + k] = (zi + ci) / 2;
+        re[b + k] = (zi - ci) / 2;
+        im[b + k] = -(zr - cr) / 2;
+        // the transform of a real row is conjugate symmetric
+        re[a + m] = re[a + k];
+        im[a + m] = -im[a + k];
+        re[b + m] = re[b + k];
+        im[b + m] = -im[b + k];
+      }
+    }
+    transformColumns(re, im, false);
+  }
+
+  /**
+   * Computes the overlap between the mask and the block at every position and
+   * stores it in the overlap array.
+   *
+   * @param mask the spot mask
+   */
+  private void correlate(RingMask mask) {
+    Arrays.fill(workRe, 0);
+    Arrays.fill(workIm, 0);
+    for (int k = 0; k < mask.whiteCount(); ++k) {
+      workRe[mask.dy(k) * cols + mask.dx(k)] = 1;
+    }
+    forward(workRe, workIm, mask.width());
+    // multiply the transform of the picture by the conjugate of the mask's
+    for (int k = 0; k < cols * rows; ++k) {
+      double re = edgeRe[k] * workRe[k] + edgeIm[k] * workIm[k];
+      double im = edgeIm[k] * workRe[k] - edgeRe[k] * workIm[k];
+      workRe[k] = re;
+      workIm[k] = im;
+    }
+    transformColumns(workRe, workIm, true);
+    // every row of the result is real, so invert two rows at once as a + ib
+    int width = edges.width();
+    int height = edges.height();
+    double scale = 1.0 / cols / rows;
+    for (int j = 0; j < height; j += 2) {
+      int a = j * cols;
+      int b = a + cols;
+      boolean pair = j + 1 < height;
+      if (pair) {
+        for (int k = 0; k < cols; ++k) {
+          double re = workRe[a + k] - workIm[b + k];
+          double im = workIm[a + k] + workRe[b + k];
+          workRe[a + k] = re;
+          workIm[a + k] = im;
+        }
+      }
+      fft(workRe, workIm, a, cols, rowTwiddles, true);
+      for (int i = 0; i < width; ++i) {
+        overlap[j * width + i] = (int) Math.round(workRe[a + i] * scale);
+        if (pair) {
+          overlap[(j + 1) * width + i] =
+              (int) Math.round(workIm[a + i] * scale);
+        }
+      }
+    }
+    current = mask;
+  }
+
+  @Override
+  public void prepare(RingMask mask) {
+    if (mask != current) {
+      correlate(mask); // a new radius, so find every overlap at once
+    }
+  }
+
+  @Override
+  public boolean matches(RingMask mask, int col, int row, int diff) {
+    prepare(mask);
+    int width = mask.width();
+    int blockCount = whitePixels.count(col, row, width, width);
+    if (blockCount == 0) {
+      return false; // every pixel in image block is black
+    }
+    int sum = 255 * (blockCount + mask.whiteCount()
+        - 2 * overlap[row * edges.width() + col]);
+    return sum < diff;
+  }
+
+  /**
+   * Unit tests the FftMatcher class by counting the spots in the given picture
+   * of edges with both the original and the FFT matcher.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster edges = GreyRaster.fromPicture(new Picture(args[0]));
+    int r1 = Integer.parseInt(args[1]);
+    int r2 = Integer.parseInt(args[2]);
+    SpotDetection.detectSpots(edges, r1, r2, new BlockMatcher(edges));
+    SpotDetection.detectSpots(edges, r1, r2, new FftMatcher(edges));
+  }
+
+}
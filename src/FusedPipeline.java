@@ -0,0 +1,148 @@
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * The FusedPipeline class grey-scales a picture, applies noise reduction to it
+ * and detects its edges in a single pass over the rows of the picture. Since
+ * noise reduction and edge detection only look at the Von Neumann
+ * neighborhood of a pixel, each stage only needs the row above and the row
+ * below the one it is working on. A rolling buffer of three rows per stage is
+ * therefore enough, and the grey-scaled and noise reduced pictures are never
+ * stored in full. Each row goes through the same PixelKernels runs as the
+ * tiled stages, so the edges produced are the same as those produced by
+ * calling GreyScale, NoiseReduction and EdgeDetection one after the other.
+ * <p>
+ * The rows of each buffer are kept in order (above, current, below), so a
+ * run can read its neighbours at a stride of one row. A new row is added by
+ * moving the two newest rows up, which copies two rows per row of the
+ * picture.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class FusedPipeline {
+
+  /**
+   * Moves the two newest rows of a rolling buffer up, so the last row is free
+   * for the next one.
+   *
+   * @param buffer the three rows, one after another
+   * @param width the number of pixels in each row
+   */
+  private static void shift(byte[] buffer, int width) {
+    System.arraycopy(buffer, width, buffer, 0, 2 * width);
+  }
+
+  /**
+   * Applies noise reduction to the middle row of the grey buffer and adds the
+   * result to the reduced buffer. The first and last pixel are copied
+   * unchanged, as in NoiseReduction.
+   *
+   * @param grey the rolling buffer of grey-scaled rows
+   * @param reduced the rolling buffer of noise reduced rows
+   * @param width the number of pixels in each row
+   */
+  private static void reduceRow(byte[] grey, byte[] reduced, int width) {
+    shift(reduced, width);
+    reduced[2 * width] = grey[width];
+    reduced[3 * width - 1] = grey[2 * width - 1];
+    PixelKernels.DEFAULT.reduceRun(grey, width + 1, width, reduced,
+        2 * width + 1, Math.max(0, width - 2));
+  }
+
+  /**
+   * Adds a border row, which noise reduction copies unchanged, to the reduced
+   * buffer.
+   *
+   * @param grey the rolling buffer of grey-scaled rows
+   * @param row the row of the grey buffer to copy
+   * @param reduced the rolling buffer of noise reduced rows
+   * @param width the number of pixels in each row
+   */
+  private static void copyRow(byte[] grey, int row, byte[] reduced,
+      int width) {
+    shift(reduced, width);
+    System.arraycopy(grey, row * width, reduced, 2 * width, width);
+  }
+
+  /**
+   * Detects the edges in the middle row of the reduced buffer and writes them
+   * to the raster of edges. The first and last pixel stay black.
+   *
+   * @param reduced the rolling buffer of noise reduced rows
+   * @param width the number of pixels in each row
+   * @param epsilon the threshold value for edge detection
+   * @param edges the raster of edges
+   * @param row the row of the raster to write
+   */
+  private static void detectRow(byte[] reduced, int width, int epsilon,
+      GreyRaster edges, int row) {
+    PixelKernels.DEFAULT.detectRun(reduced, width + 1, width, edges.data(),
+        edges.index(1, row), Math.max(0, width - 2), epsilon);
+  }
+
+  /**
+   * Grey-scales the picture, reduces its noise and detects its edges, emitting
+   * the raster of edges row by row. Row r of the noise reduced picture can be
+   * computed once grey row r + 1 has been read, and row r of the edges once
+   * noise reduced row r + 1 is known, so the edges lag two rows behind the
+   * rows read from the picture. Border pixels are black, as in EdgeDetection.
+   *
+   * @param pic the colour picture
+   * @param epsilon the threshold value for edge detection
+   * @return the raster of edges in the picture
+   */
+  public static GreyRaster getEdgeDetected(Picture pic, int epsilon) {
+    int width = pic.width();
+    int height = pic.height();
+    GreyRaster edges = new GreyRaster(width, height);
+    int[] rgbRow = new int[width];
+    int[] sums = new int[width];
+    byte[] grey = new byte[3 * width];
+    byte[] reduced = new byte[3 * width];
+    for (int row = 0; row < height; ++row) {
+      shift(grey, width);
+      pic.getRGB(row, rgbRow); // read the whole row at once
+      PixelKernels.DEFAULT.greyRow(rgbRow, sums, grey, 2 * width, width);
+      if (row == 1) { // the top border row
+        copyRow(grey, 1, reduced, width);
+      } else if (row >= 2) { // grey rows row - 2 to row are buffered
+        reduceRow(grey, reduced, width);
+      }
+      if (row >= 3) { // reduced rows row - 3 to row - 1 are buffered
+        detectRow(reduced, width, epsilon, edges, row - 2);
+      }
+    }
+    // the last row has no row below it, so flush it from the buffers
+    if (height >= 2) {
+      copyRow(grey, 2, reduced, width);
+    }
+    if (height >= 3) {
+      detectRow(reduced, width, epsilon, edges, height - 2);
+    }
+    return edges;
+  }
+
+  /**
+   * Unit tests the FusedPipeline class by detecting the edges in the given
+   * picture with the given epsilon value, checking that they are the same as
+   * the stages give one after the other and printing the time each takes.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    Picture pic = new Picture(new File(args[0]));
+    int epsilon = Integer.parseInt(args[1]);
+    double megapixels = pic.width() * (double) pic.height() / 1e6;
+    GreyRaster expected = EdgeDetection.getEdgeDetected(
+        NoiseReduction.getNoiseReduction(GreyScale.getGreyScale(pic)),
+        epsilon);
+    StdOut.println("same edges: " + Arrays.equals(expected.data(),
+        getEdgeDetected(pic, epsilon).data()));
+    Bench.measure("stages", megapixels, () -> EdgeDetection.getEdgeDetected(
+        NoiseReduction.getNoiseReduction(GreyScale.getGreyScale(pic)),
+        epsilon));
+    Bench.measure("fused", megapixels, () -> getEdgeDetected(pic, epsilon));
+  }
+
+}
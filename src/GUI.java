@@ -21,15 +21,14 @@ public class GUI {
    */
   public static void createPictures(File file, String fileName, int epsilon,
       int r1, int r2) {
-    Picture pic = new Picture(file);
-    pic = GreyScale.getGreyScale(pic);
-    pic.save(fileName + "_GS.png");
+    GreyRaster pic = GreyReader.read(file);
+    pic.toPicture().save(fileName + "_GS.png");
     pic = NoiseReduction.getNoiseReduction(pic);
-    pic.save(fileName + "_NR.png");
+    pic.toPicture().save(fileName + "_NR.png");
     pic = EdgeDetection.getEdgeDetected(pic, epsilon);
-    pic.save(fileName + "_ED.png");
+    pic.toPicture().save(fileName + "_ED.png");
     pic = SpotDetection.detectSpots(pic, r1, r2);
-    pic.save(fileName + "_SD.png");
+    pic.toPicture().save(fileName + "_SD.png");
   }
 
   /**
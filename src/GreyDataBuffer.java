@@ -0,0 +1,104 @@
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import javax.imageio.ImageTypeSpecifier;
+
+/**
+ * The GreyDataBuffer class lets an ImageReader decode a color image straight
+ * into a GreyRaster. It looks to the reader like the buffer of a
+ * TYPE_INT_RGB image, one packed RGB value per pixel, but every value written
+ * to it is grey-scaled with GreyScale.getGrey() and only the grey byte is
+ * kept. The color image is therefore never stored, and the pixels are
+ * grey-scaled as they are decoded instead of in a second pass.
+ * <p>
+ * Only whole pixels can be written. The raster reads a pixel back before it
+ * writes it, to keep any bits outside the bands, and getElem() gives the grey
+ * value in every band since the color isn't kept. That is harmless when every
+ * band is then replaced, but a reader which set one band at a time through
+ * setSample() would mix its band with grey ones. A reader writes one band at
+ * a time when it decodes the bands separately, into a sample model which
+ * keeps each band in its own bank or plane, so the buffer is only made for
+ * images whose sample model keeps the bands of a pixel together: packed into
+ * one element, or interleaved with one element per band. Such a reader
+ * decodes whole pixels and copies them to the destination with setRect() or
+ * setPixel(), as the JPEG and PNG readers of the JDK do.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class GreyDataBuffer extends DataBuffer {
+  private final byte[] data; // the grey values, one row after another
+
+  /**
+   * Checks whether the images of a type keep the bands of each pixel
+   * together, so that a reader decoding to that type writes whole pixels and
+   * can decode into a GreyDataBuffer.
+   *
+   * @param type the type of image the reader decodes to
+   * @return true if the bands of a pixel are packed into one element or
+   *         interleaved in one bank, else false
+   */
+  public static boolean accepts(ImageTypeSpecifier type) {
+    SampleModel model = type.getSampleModel();
+    if (model instanceof SinglePixelPackedSampleModel) {
+      return true;
+    } else if (model instanceof ComponentSampleModel) {
+      ComponentSampleModel components = (ComponentSampleModel) model;
+      for (int bank : components.getBankIndices()) {
+        if (bank != 0) {
+          return false;
+        }
+      }
+      return components.getPixelStride() == model.getNumBands();
+    }
+    return false;
+  }
+
+  /**
+   * Creates a buffer which writes the grey values into the given raster, for
+   * a reader which decodes to the given type of image.
+   *
+   * @param raster the raster where the grey values are written
+   * @param type the type of image the reader decodes to
+   * @throws IllegalArgumentException if the rows of the raster have gaps
+   *         between them, or the reader may write one band at a time
+   */
+  public GreyDataBuffer(GreyRaster raster, ImageTypeSpecifier type) {
+    super(TYPE_INT, raster.width() * raster.height());
+    if (raster.offset() != 0 || raster.stride() != raster.width()) {
+      throw new IllegalArgumentException("raster must not be a sub-raster");
+    }
+    if (!accepts(type)) {
+      throw new IllegalArgumentException("reader may not write whole pixels: "
+          + type.getSampleModel().getClass().getName());
+    }
+    data = raster.data();
+  }
+
+  /**
+   * Returns the grey value of a pixel as a packed RGB value.
+   *
+   * @param bank the bank, which is always 0
+   * @param i the index of the pixel, row * width + col
+   * @return the grey value in all three bands
+   */
+  @Override
+  public int getElem(int bank, int i) {
+    int grey = data[i] & 0xFF;
+    return (grey << 16) | (grey << 8) | grey;
+  }
+
+  /**
+   * Grey-scales a packed RGB value and stores it.
+   *
+   * @param bank the bank, which is always 0
+   * @param i the index of the pixel, row * width + col
+   * @param rgb the packed RGB value
+   */
+  @Override
+  public void setElem(int bank, int i, int rgb) {
+    data[i] = (byte) GreyScale.getGrey(rgb);
+  }
+
+}
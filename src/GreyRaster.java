@@ -0,0 +1,238 @@
+import java.util.Arrays;
+
+/**
+ * The GreyRaster class stores a grey-scaled image as a single flat array of
+ * bytes in row-major order. Every stage of the project (grey-scaling, noise
+ * reduction, edge detection and spot detection) reads and writes GreyRasters,
+ * so that a picture only has to be converted at the start and the end of the
+ * program rather than between every stage.
+ * <p>
+ * Pixel (col, row) is stored at {@code data[offset + row * stride + col]} and
+ * holds a value between 0 (black) and 255 (white). The getters and setters do
+ * not check their indices because they are called once for every pixel in
+ * the image.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class GreyRaster {
+  private final byte[] data; // the grey values of the pixels
+  private final int width; // number of columns
+  private final int height; // number of rows
+  private final int offset; // index of pixel (0, 0) in data
+  private final int stride; // distance between the start of two rows in data
+
+  /**
+   * Creates a black raster with the given width and height.
+   *
+   * @param width the number of columns in the raster
+   * @param height the number of rows in the raster
+   * @throws IllegalArgumentException if width or height is not positive
+   */
+  public GreyRaster(int width, int height) {
+    this(new byte[checkSize(width, height)], width, height, 0, width);
+  }
+
+  /**
+   * Creates a raster which uses the given array to store its pixels.
+   *
+   * @param data the array containing the grey values of the pixels
+   * @param width the number of columns in the raster
+   * @param height the number of rows in the raster
+   * @param offset the index of pixel (0, 0) in data
+   * @param stride the distance between the start of two rows in data
+   * @throws IllegalArgumentException if the array is too small for the raster
+   */
+  public GreyRaster(byte[] data, int width, int height, int offset,
+      int stride) {
+    checkSize(width, height);
+    if (data == null) {
+      throw new IllegalArgumentException("data array is null");
+    }
+    if (offset < 0 || stride < width
+        || offset + (long) (height - 1) * stride + width > data.length) {
+      throw new IllegalArgumentException("data array is too small");
+    }
+    this.data = data;
+    this.width = width;
+    this.height = height;
+    this.offset = offset;
+    this.stride = stride;
+  }
+
+  /**
+   * Checks that the width and height of a raster are positive.
+   *
+   * @param width the number of columns in the raster
+   * @param height the number of rows in the raster
+   * @return the number of pixels in the raster
+   */
+  private static int checkSize(int width, int height) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("width and height must be positive");
+    }
+    return Math.multiplyExact(width, height);
+  }
+
+  /**
+   * Returns the number of columns in the raster.
+   *
+   * @return the width of the raster
+   */
+  public int width() {
+    return width;
+  }
+
+  /**
+   * Returns the number of rows in the raster.
+   *
+   * @return the height of the raster
+   */
+  public int height() {
+    return height;
+  }
+
+  /**
+   * Returns the index of pixel (0, 0) in the data array.
+   *
+   * @return the offset of the first pixel
+   */
+  public int offset() {
+    return offset;
+  }
+
+  /**
+   * Returns the distance between the start of two rows in the data array.
+   *
+   * @return the stride of the raster
+   */
+  public int stride() {
+    return stride;
+  }
+
+  /**
+   * Returns the array backing the raster. Kernels which work on whole rows
+   * use this to avoid calling get() and set() for every pixel.
+   *
+   * @return the data array of the raster
+   */
+  public byte[] data() {
+    return data;
+  }
+
+  /**
+   * Returns the index of pixel (col, row) in the data array.
+   *
+   * @param col the column of the pixel
+   * @param row the row of the pixel
+   * @return the index of the pixel in the data array
+   */
+  public int index(int col, int row) {
+    return offset + row * stride + col;
+  }
+
+  /**
+   * Returns the grey value of pixel (col, row).
+   *
+   * @param col the column of the pixel
+   * @param row the row of the pixel
+   * @return the grey value between 0 and 255
+   */
+  public int get(int col, int row) {
+    return data[offset + row * stride + col] & 0xFF;
+  }
+
+  /**
+   * Sets the grey value of pixel (col, row).
+   *
+   * @param col the column of the pixel
+   * @param row the row of the pixel
+   * @param grey the grey value between 0 and 255
+   */
+  public void set(int col, int row, int grey) {
+    data[offset + row * stride + col] = (byte) grey;
+  }
+
+  /**
+   * Checks whether the grey values in a rectangle differ from each other by
+   * at most the tolerance. Stops reading as soon as they don't.
+   *
+   * @param col the first column of the rectangle
+   * @param row the first row of the rectangle
+   * @param w the width of the rectangle
+   * @param h the height of the rectangle
+   * @param tolerance the largest difference allowed, 0 for a constant value
+   * @return true if the rectangle is uniform, else false
+   */
+  public boolean isUniform(int col, int row, int w, int h, int tolerance) {
+    int min = get(col, row);
+    int max = min;
+    for (int j = row; j < row + h; ++j) {
+      int start = offset + j * stride + col;
+      for (int k = start; k < start + w; ++k) {
+        int grey = data[k] & 0xFF;
+        min = Math.min(min, grey);
+        max = Math.max(max, grey);
+      }
+      if (max - min > tolerance) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Sets every pixel in a rectangle to the same grey value.
+   *
+   * @param col the first column of the rectangle
+   * @param row the first row of the rectangle
+   * @param w the width of the rectangle
+   * @param h the height of the rectangle
+   * @param grey the grey value between 0 and 255
+   */
+  public void fill(int col, int row, int w, int h, int grey) {
+    for (int j = row; j < row + h; ++j) {
+      int start = offset + j * stride + col;
+      Arrays.fill(data, start, start + w, (byte) grey);
+    }
+  }
+
+  /**
+   * Converts a grey-scaled picture to a raster. Since all three color channels
+   * of a grey picture are the same only the red channel is read.
+   *
+   * @param pic the grey-scaled picture
+   * @return the raster containing the grey values of the picture
+   */
+  public static GreyRaster fromPicture(Picture pic) {
+    GreyRaster raster = new GreyRaster(pic.width(), pic.height());
+    pic.getGrey(0, 0, raster.width, raster.height, raster.data, raster.offset,
+        raster.stride);
+    return raster;
+  }
+
+  /**
+   * Converts the raster to a grey-scaled picture so that it can be shown or
+   * saved.
+   *
+   * @return the picture represented by the raster
+   */
+  public Picture toPicture() {
+    Picture pic = new Picture(width, height);
+    pic.setGrey(0, 0, width, height, data, offset, stride);
+    return pic;
+  }
+
+  /**
+   * Unit tests the GreyRaster class by converting a grey picture to a raster
+   * and back again, and showing the result.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster raster = fromPicture(new Picture(args[0]));
+    StdOut.printf("%d-by-%d\n", raster.width(), raster.height());
+    raster.toPicture().show();
+  }
+
+}
@@ -0,0 +1,287 @@
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DirectColorModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * The GreyReader class reads a JPEG or PNG file straight into a grey-scaled
+ * GreyRaster. new Picture(file) decodes the whole image into a color image
+ * of 3 or 4 bytes per pixel, which GreyScale.getGreyScale() then reads back.
+ * Here the ImageReader is given a destination whose buffer is a
+ * GreyDataBuffer, so each pixel is grey-scaled as it is decoded and only 1
+ * byte per pixel is ever stored.
+ * <p>
+ * This is only done when the reader decodes to a type which keeps the bands
+ * of each pixel together, so that it writes whole pixels (see
+ * GreyDataBuffer), and to 8-bit sRGB without alpha, so that the grey values
+ * are the same as GreyScale gives. That is the case for color JPEGs and most
+ * color PNGs. Other images (grey, indexed, 16-bit, with alpha, with their own
+ * color profile or with their bands in separate planes) are decoded as usual
+ * and then grey-scaled through getRGB(), as Picture does.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class GreyReader {
+
+  /**
+   * Returns the size of the first image in a file, reading only its header.
+   *
+   * @param file the image file
+   * @return the width and height of the image, or null if the file can't be
+   *         read as an image
+   */
+  public static Dimension size(File file) {
+    try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+      Iterator<ImageReader> readers =
+          input == null ? null : ImageIO.getImageReaders(input);
+      if (readers == null || !readers.hasNext()) {
+        return null;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        return new Dimension(reader.getWidth(0), reader.getHeight(0));
+      } finally {
+        reader.dispose();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reads an image file and grey-scales it.
+   *
+   * @param file the image file
+   * @return the grey scaled image, the same as
+   *         GreyScale.getGreyScale(new Picture(file))
+   * @throws IllegalArgumentException if the file can't be read as an image
+   */
+  public static GreyRaster read(File file) {
+    return read(file, null, 1);
+  }
+
+  /**
+   * Reads part of an image file, or every few pixels of it, and grey-scales
+   * it. The reader is asked for only that part and only those pixels, so
+   * the rest of the picture is never stored or grey-scaled. Pixel (col, row)
+   * of the raster is pixel (x + col * subsampling, y + row * subsampling) of
+   * the image, where (x, y) is the top left corner of the region.
+   *
+   * @param file the image file
+   * @param region the part of the image to read, or null for all of it
+   * @param subsampling the distance between the pixels read, 1 for every
+   *        pixel
+   * @return the grey scaled part of the image
+   * @throws IllegalArgumentException if the file can't be read as an image,
+   *         the region is outside the image or subsampling is not positive
+   */
+  public static GreyRaster read(File file, Rectangle region,
+      int subsampling) {
+    if (file == null) {
+      throw new IllegalArgumentException("file is null");
+    }
+    if (subsampling < 1) {
+      throw new IllegalArgumentException("subsampling must be positive");
+    }
+    return read(file, region, subsampling, true);
+  }
+
+  /**
+   * Reads part of an image file, or every few pixels of it, and grey-scales
+   * it, decoding straight into the raster if direct is true and the reader
+   * can. A few readers (the BMP reader of the JDK, for one) take the array
+   * out of the buffer of the destination and write to it themselves, which a
+   * GreyDataBuffer can't allow; they fail with a ClassCastException, and the
+   * image is then read again without decoding straight into the raster.
+   *
+   * @param file the image file
+   * @param region the part of the image to read, or null for all of it
+   * @param subsampling the distance between the pixels read, 1 for every
+   *        pixel
+   * @param direct whether to try decoding straight into the raster
+   * @return the grey scaled part of the image
+   * @throws IllegalArgumentException if the file can't be read as an image
+   *         or the region is outside the image
+   */
+  private static GreyRaster read(File file, Rectangle region,
+      int subsampling, boolean direct) {
+    try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+      Iterator<ImageReader> readers =
+          input == null ? null : ImageIO.getImageReaders(input);
+      if (readers == null || !readers.hasNext()) {
+        throw new IllegalArgumentException("could not read file: " + file);
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        Rectangle bounds =
+            new Rectangle(reader.getWidth(0), reader.getHeight(0));
+        if (region != null) {
+          bounds = bounds.intersection(region);
+          if (bounds.isEmpty()) {
+            throw new IllegalArgumentException("region is outside image");
+          }
+        }
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(bounds);
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        GreyRaster raster =
+            new GreyRaster((bounds.width + subsampling - 1) / subsampling,
+                (bounds.height + subsampling - 1) / subsampling);
+        ImageTypeSpecifier type = reader.getImageTypes(0).next();
+        if (direct && GreyDataBuffer.accepts(type) && isRgb(type)) {
+          param.setDestination(destination(raster, type));
+          try {
+            reader.read(0, param);
+          } catch (ClassCastException e) {
+            // the reader writes straight into the array of the buffer
+            return read(file, region, subsampling, false);
+          }
+        } else {
+          greyScale(reader.read(0, param), raster);
+        }
+        return raster;
+      } finally {
+        reader.dispose();
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("could not open file: " + file, e);
+    }
+  }
+
+  /**
+   * Grey-scales an image decoded to some other type, through getRGB() as
+   * Picture does, one row at a time.
+   *
+   * @param image the decoded image
+   * @param raster the raster where the grey values are written
+   */
+  private static void greyScale(BufferedImage image, GreyRaster raster) {
+    int width = raster.width();
+    int[] rgbRow = new int[width];
+    int[] sums = new int[width];
+    for (int j = 0; j < raster.height(); ++j) {
+      image.getRGB(0, j, width, 1, rgbRow, 0, width);
+      GreyScale.greyRow(rgbRow, sums, raster.data(), raster.index(0, j),
+          width);
+    }
+  }
+
+  /**
+   * Checks whether a reader decodes an image to 8 bits of sRGB per band with
+   * no alpha, so that the pixels written to the destination are exactly the
+   * ones new Picture(file) would hold.
+   *
+   * @param type the type of image the reader decodes to by default
+   * @return true if the image is plain 8-bit RGB, else false
+   */
+  private static boolean isRgb(ImageTypeSpecifier type) {
+    ColorModel model = type.getColorModel();
+    if (type.getNumBands() != 3 || model.hasAlpha()
+        || !model.getColorSpace().isCS_sRGB()) {
+      return false;
+    }
+    for (int size : type.getSampleModel().getSampleSize()) {
+      if (size != 8) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Creates an image which looks like a TYPE_INT_RGB image to a reader, but
+   * stores the grey values of its pixels in the raster.
+   *
+   * @param raster the raster where the grey values are written
+   * @param type the type of image the reader decodes to
+   * @return the destination image
+   */
+  private static BufferedImage destination(GreyRaster raster,
+      ImageTypeSpecifier type) {
+    int width = raster.width();
+    int height = raster.height();
+    DirectColorModel model = new DirectColorModel(
+        ColorSpace.getInstance(ColorSpace.CS_sRGB), 24, 0xFF0000, 0xFF00,
+        0xFF, 0, false, GreyDataBuffer.TYPE_INT);
+    SampleModel sampleModel = new SinglePixelPackedSampleModel(
+        GreyDataBuffer.TYPE_INT, width, height, model.getMasks());
+    WritableRaster pixels = WritableRaster.createWritableRaster(sampleModel,
+        new GreyDataBuffer(raster, type), null);
+    return new BufferedImage(model, pixels, false, null);
+  }
+
+  /**
+   * Unit tests the GreyReader class by reading the given image with and
+   * without it, checking that the grey values are the same and printing the
+   * time and memory each takes. If a region (x, y, width, height) and a
+   * subsampling are given too, that part of the image is read and checked
+   * against the same pixels of the whole image.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    File file = new File(args[0]);
+    Runtime runtime = Runtime.getRuntime();
+    System.gc();
+    long before = runtime.totalMemory() - runtime.freeMemory();
+    long start = System.nanoTime();
+    Picture pic = new Picture(file);
+    GreyRaster expected = GreyScale.getGreyScale(pic);
+    long time = System.nanoTime() - start;
+    long memory = runtime.totalMemory() - runtime.freeMemory() - before;
+    StdOut.printf("Picture + GreyScale: %5d ms, %6.1f MB\n", time / 1000000,
+        memory / 1e6);
+    pic = null;
+    System.gc();
+    before = runtime.totalMemory() - runtime.freeMemory();
+    start = System.nanoTime();
+    GreyRaster raster = read(file);
+    time = System.nanoTime() - start;
+    memory = runtime.totalMemory() - runtime.freeMemory() - before;
+    StdOut.printf("GreyReader:          %5d ms, %6.1f MB\n", time / 1000000,
+        memory / 1e6);
+    boolean same = true;
+    for (int j = 0; j < raster.height(); ++j) {
+      for (int i = 0; i < raster.width(); ++i) {
+        same &= raster.get(i, j) == expected.get(i, j);
+      }
+    }
+    StdOut.println("same grey values: " + same);
+    if (args.length == 6) { // region and subsampling
+      Rectangle region = new Rectangle(Integer.parseInt(args[1]),
+          Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+          Integer.parseInt(args[4]));
+      int subsampling = Integer.parseInt(args[5]);
+      start = System.nanoTime();
+      raster = read(file, region, subsampling);
+      time = System.nanoTime() - start;
+      StdOut.printf("GreyReader region:   %5d ms, %d-by-%d\n", time / 1000000,
+          raster.width(), raster.height());
+      same = true;
+      for (int j = 0; j < raster.height(); ++j) {
+        for (int i = 0; i < raster.width(); ++i) {
+          same &= raster.get(i, j) == expected.get(region.x + i * subsampling,
+              region.y + j * subsampling);
+        }
+      }
+      StdOut.println("same grey values in region: " + same);
+    }
+  }
+
+}
@@ -1,5 +1,14 @@
 /**
  * The GreyScale class implements methods for grey-scaling a color picture.
+ * <p>
+ * The grey value is computed with whole numbers: 299 * red + 587 * green +
+ * 114 * blue is the weighted sum in thousandths, so dividing it by 1000 gives
+ * the same grey value as the weights 0.299, 0.587 and 0.114 of the project
+ * specification. The only exception is a sum which is an exact multiple of
+ * 1000, where the rounding of the doubles sometimes makes the original
+ * formula give one less than the true value. About 1 in 1000 colors hit such
+ * a sum, and for those the doubles are used, so the result is the same as the
+ * original formula for every one of the 2^24 colors (checked by main()).
  * 
  * @author Liam Foxcroft
  *
@@ -16,35 +25,100 @@ public class GreyScale {
     int red = (rgb >> 16) & 0xFF; // 11111111
     int green = (rgb >> 8) & 0xFF;
     int blue = rgb & 0xFF;
-    return (int) (0.299 * red + 0.587 * green + 0.114 * blue);
+    int sum = 299 * red + 587 * green + 114 * blue; // in thousandths
+    int grey = sum / 1000;
+    if (grey * 1000 == sum) { // the doubles may round down, so use them
+      return (int) (0.299 * red + 0.587 * green + 0.114 * blue);
+    }
+    return grey;
+  }
+
+  /**
+   * Grey-scales a row of packed RGB values into a row of bytes, in the same
+   * way as getGrey(). The sums are computed in a separate loop with no
+   * branches, so the JIT compiler can use vector instructions for them.
+   * 
+   * @param rgb the packed RGB values
+   * @param sums a scratch array at least length long
+   * @param out the array where the grey values are written
+   * @param outIndex the index in out of the first grey value
+   * @param length the number of pixels
+   */
+  public static void greyRow(int[] rgb, int[] sums, byte[] out, int outIndex,
+      int length) {
+    for (int i = 0; i < length; ++i) {
+      int pixel = rgb[i];
+      sums[i] = 299 * ((pixel >> 16) & 0xFF) + 587 * ((pixel >> 8) & 0xFF)
+          + 114 * (pixel & 0xFF);
+    }
+    for (int i = 0; i < length; ++i) {
+      int grey = sums[i] / 1000;
+      if (grey * 1000 == sums[i]) {
+        grey = getGrey(rgb[i]);
+      }
+      out[outIndex + i] = (byte) grey;
+    }
   }
 
   /**
    * Returns a grey scaled version of the input picture.
    * 
    * @param pic the picture to be grey-scaled
-   * @return grey scaled version of input
+   * @return grey scaled version of input as a raster
    */
-  public static Picture getGreyScale(Picture pic) {
+  public static GreyRaster getGreyScale(Picture pic) {
     int width = pic.width();
     int height = pic.height();
-    int[][] newPic = new int[width][height];
-    for (int i = 0; i < width; ++i) {
-      for (int j = 0; j < height; ++j) {
-        newPic[i][j] = getGrey(pic.getRGB(i, j)); // TODO
-      }
+    GreyRaster raster = new GreyRaster(width, height);
+    int[] rgbRow = new int[width];
+    int[] sums = new int[width];
+    for (int j = 0; j < height; ++j) {
+      pic.getRGB(j, rgbRow); // read the whole row at once
+      PixelKernels.DEFAULT.greyRow(rgbRow, sums, raster.data(),
+          raster.index(0, j), width);
     }
-    return Utility.getPicFromArr(newPic);
+    return raster;
   }
 
   /**
-   * Unit tests the methods in GreyScale class by creating and showing a picture
-   * after noise reduction.
+   * Unit tests the methods in GreyScale class by checking getGrey() against
+   * the weights of the project specification for every color, and that
+   * PixelKernels.DEFAULT grey-scales every color in the same way as
+   * getGrey(), and then creating and showing the grey scaled picture if one
+   * is given.
    * 
    * @param args the command line arguments
    */
   public static void main(String[] args) {
-    getGreyScale(new Picture(args[0])).show();
+    int[] rgb = new int[1 << 12];
+    int[] sums = new int[rgb.length];
+    byte[] out = new byte[rgb.length];
+    int wrong = 0;
+    int differ = 0;
+    for (int start = 0; start < 1 << 24; start += rgb.length) {
+      for (int k = 0; k < rgb.length; ++k) {
+        rgb[k] = start + k;
+        int red = rgb[k] >> 16;
+        int green = (rgb[k] >> 8) & 0xFF;
+        int blue = rgb[k] & 0xFF;
+        if (getGrey(rgb[k])
+            != (int) (0.299 * red + 0.587 * green + 0.114 * blue)) {
+          wrong++;
+        }
+      }
+      PixelKernels.DEFAULT.greyRow(rgb, sums, out, 0, rgb.length);
+      for (int k = 0; k < rgb.length; ++k) {
+        if ((out[k] & 0xFF) != getGrey(rgb[k])) {
+          differ++;
+        }
+      }
+    }
+    StdOut.println(wrong + " of " + (1 << 24) + " colors are wrong");
+    StdOut.println(differ + " of " + (1 << 24) + " colors differ in "
+        + PixelKernels.DEFAULT.name());
+    if (args.length > 0) {
+      getGreyScale(new Picture(args[0])).toPicture().show();
+    }
   }
 
 }
@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The HoughSpotDetection class finds spots using the circular Hough
+ * transform. The edge of a spot is a ring of white pixels, so every white
+ * pixel in the picture of edges votes for all of the centers that a circle of
+ * radius r through it could have. The centers of rings of radius r collect
+ * many votes, and are found as the peaks of the votes. Only white pixels
+ * vote, so the time taken depends on the number of edges rather than the size
+ * of the picture, which suits pictures which are mostly background.
+ * <p>
+ * For each radius from r1 to r2 the votes are collected in an accumulator the
+ * size of the picture. A center is a candidate if it gets at least MIN_VOTES
+ * of the points on the circle and has more votes than the 8 centers around it
+ * (non-maximum suppression). The candidates of every radius are then sorted by
+ * the fraction of the circle they cover, and a candidate is only counted if
+ * its center isn't inside a spot which has already been counted.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class HoughSpotDetection {
+  /** The fraction of the points on a circle needed to count it as a spot. */
+  public static final double MIN_VOTES = 0.7;
+
+  /**
+   * Adds (or removes) the votes of every white pixel for the centers of the
+   * circles through it. When a center reaches the threshold it is added to the
+   * list of candidates.
+   *
+   * @param white the positions of the white pixels, as row * width + col
+   * @param n the number of white pixels
+   * @param circle the offsets of the points on the circle
+   * @param width the width of the picture
+   * @param height the height of the picture
+   * @param votes the accumulator
+   * @param vote 1 to add votes, or -1 to remove them again
+   * @param threshold the number of votes needed to be a candidate
+   * @param candidates the list of centers which reached the threshold
+   */
+  private static void vote(int[] white, int n, int[][] circle, int width,
+      int height, int[] votes, int vote, int threshold,
+      List<Integer> candidates) {
+    for (int p = 0; p < n; ++p) {
+      int col = white[p] % width;
+      int row = white[p] / width;
+      for (int k = 0; k < circle[0].length; ++k) {
+        int i = col - circle[0][k];
+        int j = row - circle[1][k];
+        if (i < 0 || j < 0 || i >= width || j >= height) {
+          continue;
+        }
+        votes[j * width + i] += vote;
+        if (vote > 0 && votes[j * width + i] == threshold) {
+          candidates.add(j * width + i);
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks whether a center has more votes than the centers around it. Ties
+   * are won by the center which comes first row by row.
+   *
+   * @param votes the accumulator
+   * @param width the width of the picture
+   * @param height the height of the picture
+   * @param index the position of the center, as row * width + col
+   * @return true if the center is a peak, else false
+   */
+  private static boolean isPeak(int[] votes, int width, int height,
+      int index) {
+    int col = index % width;
+    int row = index / width;
+    for (int j = Math.max(0, row - 1); j <= Math.min(height - 1, row + 1);
+        ++j) {
+      for (int i = Math.max(0, col - 1); i <= Math.min(width - 1, col + 1);
+          ++i) {
+        int other = j * width + i;
+        if (votes[other] > votes[index]
+            || (votes[other] == votes[index] && other < index)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Finds the spots in the picture of edges, paints the edges of the spots
+   * white in a new raster and stores their centers and radii in the registry.
+   *
+   * @param edges the raster containing edges
+   * @param r1 the minimum radius of a spot
+   * @param r2 the maximum radius of a spot
+   * @param registry where the spots which are found are stored
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2,
+      SpotRegistry registry) {
+    int width = edges.width();
+    int height = edges.height();
+    int[] white = new int[64];
+    int n = 0;
+    for (int j = 0; j < height; ++j) {
+      for (int i = 0; i < width; ++i) {
+        if (edges.get(i, j) != 0) {
+          if (n == white.length) {
+            white = Arrays.copyOf(white, 2 * n);
+          }
+          white[n++] = j * width + i;
+        }
+      }
+    }
+    // candidates as {score in millionths of the circle, radius, index}
+    List<long[]> peaks = new ArrayList<>();
+    int[] votes = new int[width * height];
+    for (int radius = r1; radius <= r2; ++radius) {
+      int[][] circle = PeakCounter.circle(radius);
+      int threshold = (int) Math.ceil(MIN_VOTES * circle[0].length);
+      List<Integer> candidates = new ArrayList<>();
+      vote(white, n, circle, width, height, votes, 1, threshold, candidates);
+      for (int index : candidates) {
+        if (isPeak(votes, width, height, index)) {
+          long score = 1000000L * votes[index] / circle[0].length;
+          peaks.add(new long[] {score, radius, index});
+        }
+      }
+      // take the votes away again, rather than clearing the whole picture
+      vote(white, n, circle, width, height, votes, -1, threshold, candidates);
+    }
+    return PeakCounter.countPeaks(edges, peaks, registry);
+  }
+
+  /**
+   * Unit tests the HoughSpotDetection class by counting the spots in the given
+   * picture of edges and showing them.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster edges = GreyRaster.fromPicture(new Picture(args[0]));
+    detectSpots(edges, Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+        new SpotRegistry()).toPicture().show();
+  }
+
+}
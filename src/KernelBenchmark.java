@@ -0,0 +1,155 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The KernelBenchmark class measures how fast ScalarKernels and
+ * PixelKernels.DEFAULT run each pixel-wise stage on pictures of 1, 8 and 24
+ * megapixels, timing each with Bench. Every row of the picture is given to
+ * the kernel as one run, so the uniform tiles of the stages don't hide the
+ * speed of the kernels. Before timing, the output of both kernels is checked
+ * to be the same.
+ * <p>
+ * Run it with {@code --add-modules jdk.incubator.vector} and VectorKernels on
+ * the class path to compare against the Vector API; otherwise both columns
+ * are ScalarKernels.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class KernelBenchmark {
+  /**
+   * Grey-scales every row of a picture of packed RGB values.
+   *
+   * @param kernels the kernels to use
+   * @param rgb the packed RGB values, one row after another
+   * @param width the width of the picture
+   * @param out the array where the grey values are written
+   */
+  private static void grey(PixelKernels kernels, int[] rgb, int width,
+      byte[] out) {
+    int[] row = new int[width];
+    int[] sums = new int[width];
+    for (int j = 0; j < rgb.length / width; ++j) {
+      System.arraycopy(rgb, j * width, row, 0, width);
+      kernels.greyRow(row, sums, out, j * width, width);
+    }
+  }
+
+  /**
+   * Applies noise reduction to every interior row of a picture.
+   *
+   * @param kernels the kernels to use
+   * @param pic the grey values
+   * @param width the width of the picture
+   * @param out the array where the reduced pixels are written
+   */
+  private static void reduce(PixelKernels kernels, byte[] pic, int width,
+      byte[] out) {
+    for (int j = 1; j < pic.length / width - 1; ++j) {
+      kernels.reduceRun(pic, j * width + 1, width, out, j * width + 1,
+          width - 2);
+    }
+  }
+
+  /**
+   * Detects the edges in every interior row of a picture.
+   *
+   * @param kernels the kernels to use
+   * @param pic the grey values
+   * @param width the width of the picture
+   * @param out the array where the edges are written
+   * @param epsilon the threshold value
+   */
+  private static void detect(PixelKernels kernels, byte[] pic, int width,
+      byte[] out, int epsilon) {
+    for (int j = 1; j < pic.length / width - 1; ++j) {
+      kernels.detectRun(pic, j * width + 1, width, out, j * width + 1,
+          width - 2, epsilon);
+    }
+  }
+
+  /**
+   * Checks that two kernels give the same output on a small picture of random
+   * pixels with few grey values (so the mode has ties), for every epsilon
+   * and for runs of every length.
+   *
+   * @param a the first kernels
+   * @param b the second kernels
+   * @return true if every output is the same, else false
+   */
+  private static boolean same(PixelKernels a, PixelKernels b) {
+    Random random = new Random(7);
+    int width = 131;
+    int[] rgb = new int[width * 97];
+    byte[] pic = new byte[rgb.length];
+    for (int k = 0; k < rgb.length; ++k) {
+      rgb[k] = random.nextInt(1 << 24);
+      pic[k] = (byte) (random.nextInt(4) * 85);
+    }
+    for (int k = 0; k < 1000; ++k) { // sums which are multiples of 1000
+      rgb[random.nextInt(rgb.length)] = 0x0A0A0A * random.nextInt(26);
+    }
+    byte[] outA = new byte[rgb.length];
+    byte[] outB = new byte[rgb.length];
+    grey(a, rgb, width, outA);
+    grey(b, rgb, width, outB);
+    boolean same = Arrays.equals(outA, outB);
+    reduce(a, pic, width, outA);
+    reduce(b, pic, width, outB);
+    same &= Arrays.equals(outA, outB);
+    for (int k = 0; k < pic.length; ++k) {
+      pic[k] = (byte) random.nextInt(256);
+    }
+    for (int epsilon = -1; epsilon <= 256; ++epsilon) {
+      detect(a, pic, width, outA, epsilon);
+      detect(b, pic, width, outB, epsilon);
+      same &= Arrays.equals(outA, outB);
+    }
+    for (int length = 0; length < width - 2; ++length) {
+      Arrays.fill(outA, (byte) 0);
+      Arrays.fill(outB, (byte) 0);
+      a.reduceRun(pic, width + 1, width, outA, width + 1, length);
+      b.reduceRun(pic, width + 1, width, outB, width + 1, length);
+      a.detectRun(pic, width + 1, width, outA, 2 * width + 1, length, 20);
+      b.detectRun(pic, width + 1, width, outB, 2 * width + 1, length, 20);
+      same &= Arrays.equals(outA, outB);
+    }
+    return same;
+  }
+
+  /**
+   * Benchmarks the scalar and default kernels of each stage at 1, 8 and 24
+   * megapixels with the given epsilon (20 if none is given).
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    int epsilon = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    PixelKernels scalar = new ScalarKernels();
+    PixelKernels best = PixelKernels.DEFAULT;
+    StdOut.println("default kernels: " + best.name() + ", same output: "
+        + same(scalar, best));
+    int[][] sizes = {{1250, 800}, {3500, 2286}, {6000, 4000}};
+    Random random = new Random(42);
+    for (int[] size : sizes) {
+      int width = size[0];
+      int[] rgb = new int[width * size[1]];
+      for (int k = 0; k < rgb.length; ++k) {
+        rgb[k] = random.nextInt(1 << 24);
+      }
+      byte[] pic = new byte[rgb.length];
+      byte[] out = new byte[rgb.length];
+      grey(scalar, rgb, width, pic);
+      double megapixels = rgb.length / 1e6;
+      for (PixelKernels kernels : new PixelKernels[] {scalar, best}) {
+        Bench.measure("grey " + kernels.name(), megapixels,
+            () -> grey(kernels, rgb, width, out));
+        Bench.measure("reduce " + kernels.name(), megapixels,
+            () -> reduce(kernels, pic, width, out));
+        Bench.measure("detect " + kernels.name(), megapixels,
+            () -> detect(kernels, pic, width, out, epsilon));
+      }
+    }
+  }
+
+}
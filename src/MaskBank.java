@@ -0,0 +1,110 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The MaskBank class holds the parameters of the spot masks for each radius,
+ * and builds the masks themselves. Each mask is only built once, the first
+ * time it is asked for, and is then kept in a cache which is shared by every
+ * bank and every thread. The cache is keyed on all four arguments of
+ * SpotDetection.createMask(), so banks with different parameters can be used
+ * side by side. RingMasks can't be changed once built, so sharing them is
+ * safe.
+ * <p>
+ * As in the project specification, the parameters are indexed by how much
+ * bigger the radius is than the minimum radius r1, not by the radius itself.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class MaskBank {
+  private static final ConcurrentHashMap<String, RingMask> CACHE =
+      new ConcurrentHashMap<>();
+
+  /** The masks used by the project, for radii r1 up to r1 + 7. */
+  public static final MaskBank DEFAULT =
+      new MaskBank(new int[] {6, 9, 12, 15, 18, 21, 24, 27},
+          new int[] {0, 1, 1, 1, 1, 1, 2, 2},
+          new int[] {4800, 6625, 11000, 15000, 19000, 23000, 28000, 35000});
+
+  private final int[] width; // the width of the edge of the ring
+  private final int[] delta; // how far the ring is moved in
+  private final int[] difference; // the maximum sum of differences for a spot
+
+  /**
+   * Creates a bank with the given parameters for each radius from r1.
+   *
+   * @param width the width of the edge of the ring for each radius
+   * @param delta how far the ring is moved in for each radius
+   * @param difference the maximum sum of differences for each radius
+   * @throws IllegalArgumentException if the arrays have different lengths
+   */
+  public MaskBank(int[] width, int[] delta, int[] difference) {
+    if (width.length != delta.length || width.length != difference.length) {
+      throw new IllegalArgumentException("parameter arrays differ in length");
+    }
+    this.width = width.clone();
+    this.delta = delta.clone();
+    this.difference = difference.clone();
+  }
+
+  /**
+   * Returns the mask created by SpotDetection.createMask() with the given
+   * arguments, building it only if it hasn't been built before.
+   *
+   * @param picRadius the radius of the biggest circle that could fit in the
+   *        mask
+   * @param donutRadius the radius of the center line through the ring
+   * @param width the width of the edge of the ring
+   * @param delta how far the ring is moved in
+   * @return the mask
+   */
+  public static RingMask get(int picRadius, int donutRadius, int width,
+      int delta) {
+    String key = picRadius + "/" + donutRadius + "/" + width + "/" + delta;
+    return CACHE.computeIfAbsent(key, k -> new RingMask(
+        SpotDetection.createMask(picRadius, donutRadius, width, delta)));
+  }
+
+  /**
+   * Returns the number of radii which the bank has parameters for, so r2 can
+   * be at most r1 + size() - 1.
+   *
+   * @return the number of radii
+   */
+  public int size() {
+    return width.length;
+  }
+
+  /**
+   * Returns the mask used to find spots with radius r1 + i.
+   *
+   * @param r1 the minimum radius
+   * @param i how much bigger the radius is than r1
+   * @return the spot mask
+   */
+  public RingMask mask(int r1, int i) {
+    return get(r1 + i, r1 + i, width[i], delta[i]);
+  }
+
+  /**
+   * Returns the mask of the center of a spot with radius r1 + i, which is used
+   * to avoid counting the same spot twice.
+   *
+   * @param r1 the minimum radius
+   * @param i how much bigger the radius is than r1
+   * @return the mask of the center of the spot
+   */
+  public RingMask spotCounter(int r1, int i) {
+    return get(r1 + i, (r1 + i) / 2, width[i], delta[i]);
+  }
+
+  /**
+   * Returns the maximum sum of differences for a spot with radius r1 + i.
+   *
+   * @param i how much bigger the radius is than r1
+   * @return the maximum sum of differences
+   */
+  public int difference(int i) {
+    return difference[i];
+  }
+
+}
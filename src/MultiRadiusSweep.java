@@ -0,0 +1,133 @@
+import java.util.Arrays;
+
+/**
+ * The MultiRadiusSweep class counts spots in the same way as SpotDetection,
+ * but moves over the picture of edges only once instead of once per radius.
+ * At each position the rows of the largest block are read from a BitEdgeMap,
+ * and every mask from r1 to r2 is compared with the top left part of that
+ * block which it covers, largest first. If the largest block is empty, so are
+ * all of the smaller ones, and the position is skipped.
+ * <p>
+ * The matches for each radius are recorded in the order findSpots() would
+ * find them, and are counted radius by radius afterwards, so the spots which
+ * are counted are the same as those counted by SpotDetection.detectSpots().
+ * Masks wider than 64 cells don't fit in a long, so those radii are checked
+ * after the sweep with a SparseMatcher, in the same way as findSpots().
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class MultiRadiusSweep {
+
+  /**
+   * Checks whether the top left width-by-width part of the loaded block
+   * matches the mask, in the same way as BitMatcher.
+   *
+   * @param block the rows of the loaded block, packed into longs
+   * @param mask the spot mask
+   * @param width the width of the mask
+   * @param diff the maximum sum of differences for a spot
+   * @return true if the block contains a spot, else false
+   */
+  private static boolean matches(long[] block, RingMask mask, int width,
+      int diff) {
+    long columns = width == 64 ? -1L : (1L << width) - 1;
+    int mismatches = 0;
+    boolean empty = true;
+    for (int k = 0; k < width; ++k) {
+      long row = block[k] & columns;
+      empty &= row == 0;
+      mismatches += Long.bitCount(row ^ mask.bits(k));
+      if (255 * mismatches >= diff) {
+        return false; // can't be a spot anymore
+      }
+    }
+    return !empty;
+  }
+
+  /**
+   * Creates and returns a new raster of spots found in the given raster of
+   * edges, visiting every position once for all of the radii.
+   *
+   * @param edges the raster containing edges, with only 0 and 255
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2) {
+    int picWidth = edges.width();
+    int picHeight = edges.height();
+    MaskBank bank = MaskBank.DEFAULT;
+    int radii = 0; // the number of masks which fit in a long
+    while (radii <= r2 - r1 && bank.mask(r1, radii).width() <= 64) {
+      radii++;
+    }
+    long[][] matches = new long[radii][16];
+    int[] counts = new int[radii];
+    if (radii > 0) {
+      RingMask[] masks = new RingMask[radii];
+      for (int i = 0; i < radii; ++i) {
+        masks[i] = bank.mask(r1, i);
+      }
+      BitEdgeMap bits = BitEdgeMap.fromRaster(edges);
+      int maxWidth = masks[radii - 1].width();
+      long[] block = new long[maxWidth];
+      for (int i = 0; i < picWidth - masks[0].width(); ++i) {
+        int cols = Math.min(maxWidth, picWidth - i);
+        for (int j = 0; j < picHeight - masks[0].width(); ++j) {
+          int rows = Math.min(maxWidth, picHeight - j);
+          long any = 0;
+          for (int k = 0; k < rows; ++k) {
+            block[k] = bits.bits(i, j + k, cols);
+            any |= block[k];
+          }
+          if (any == 0) {
+            continue; // every block at this position is black
+          }
+          for (int r = radii - 1; r >= 0; --r) { // largest mask first
+            int width = masks[r].width();
+            if (i >= picWidth - width || j >= picHeight - width) {
+              continue; // this mask doesn't fit here
+            }
+            if (matches(block, masks[r], width, bank.difference(r))) {
+              if (counts[r] == matches[r].length) {
+                matches[r] = Arrays.copyOf(matches[r], 2 * counts[r]);
+              }
+              matches[r][counts[r]++] = ((long) i << 32) | j;
+            }
+          }
+        }
+      }
+    }
+    GreyRaster spots = new GreyRaster(picWidth, picHeight);
+    SpotRegistry registry = new SpotRegistry();
+    int counter = 0;
+    for (int r = 0; r < radii; ++r) { // count in the same order as findSpots
+      counter += SpotDetection.countMatches(edges, spots, registry,
+          bank.spotCounter(r1, r), Arrays.copyOf(matches[r], counts[r]));
+    }
+    if (radii <= r2 - r1) { // the wider masks, one radius at a time
+      SummedAreaTable whitePixels = new SummedAreaTable(edges);
+      SparseMatcher sparse = new SparseMatcher(edges, whitePixels);
+      for (int r = radii; r <= r2 - r1; ++r) {
+        counter += SpotDetection.findSpots(sparse, whitePixels, edges, spots,
+            registry, bank.mask(r1, r), bank.spotCounter(r1, r),
+            bank.difference(r));
+      }
+    }
+    StdOut.println(counter);
+    return spots;
+  }
+
+  /**
+   * Unit tests the MultiRadiusSweep class by counting the spots in the given
+   * picture of edges.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster edges = GreyRaster.fromPicture(new Picture(args[0]));
+    detectSpots(edges, Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+  }
+
+}
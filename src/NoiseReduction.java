@@ -7,60 +7,159 @@
  *
  */
 public class NoiseReduction {
+  /** The width of the tiles which are checked for a single grey value. */
+  public static final int TILE = 32;
+
+  /**
+   * Returns the centre-weighted mode of the five cells of a Von Neumann
+   * neighborhood, without allocating anything. The cells are visited in the
+   * order centre, right, left, below, above, and the color chosen is the first
+   * one whose running count reaches the highest count, unless the centre has
+   * the highest count too. The running count of each cell is found by
+   * comparing it with the cells before it (a network of ten comparisons), so
+   * no histogram is needed. Only equality is used, so the values can be
+   * grey values or bytes which haven't been masked.
+   * 
+   * @param centre the color of the central pixel
+   * @param right the color of the pixel to the right
+   * @param left the color of the pixel to the left
+   * @param below the color of the pixel below
+   * @param above the color of the pixel above
+   * @return the color of the pixel after noise reduction
+   */
+  public static int mode(int centre, int right, int left, int below,
+      int above) {
+    int rc = right == centre ? 1 : 0;
+    int lc = left == centre ? 1 : 0;
+    int bc = below == centre ? 1 : 0;
+    int ac = above == centre ? 1 : 0;
+    int lr = left == right ? 1 : 0;
+    int br = below == right ? 1 : 0;
+    int ar = above == right ? 1 : 0;
+    int bl = below == left ? 1 : 0;
+    int al = above == left ? 1 : 0;
+    int ab = above == below ? 1 : 0;
+    int maxOccurence = 1; // the running count of the centre
+    int maxColor = centre;
+    if (1 + rc > maxOccurence) {
+      maxOccurence = 1 + rc;
+      maxColor = right;
+    }
+    if (1 + lc + lr > maxOccurence) {
+      maxOccurence = 1 + lc + lr;
+      maxColor = left;
+    }
+    if (1 + bc + br + bl > maxOccurence) {
+      maxOccurence = 1 + bc + br + bl;
+      maxColor = below;
+    }
+    if (1 + ac + ar + al + ab > maxOccurence) {
+      maxOccurence = 1 + ac + ar + al + ab;
+      maxColor = above;
+    }
+    if (1 + rc + lc + bc + ac == maxOccurence) { // weight centre more
+      return centre;
+    } else {
+      return maxColor;
+    }
+  }
 
   /**
    * Applies noise reduction to a single pixel using the Von Neumann
    * neighborhood and method outlined in "Cellular Automata and Image
    * Processing" by Popovici.
    * 
-   * @param arr the array of grey-scaled colors representing the image
-   * @param row the row of the central pixel
+   * @param arr the raster of grey-scaled colors representing the image
    * @param col the column of the central pixel
+   * @param row the row of the central pixel
    * @return the color of the pixel after noise reduction
    */
-  public static int reduce(int[][] arr, int row, int col) {
-    int[] cnt = new int[256];
-    int[] dx = {0, 1, -1, 0, 0};
-    int[] dy = {0, 0, 0, 1, -1};
-    int maxOccurence = 0;
-    int maxColor = 0;
-    for (int k = 0; k < 5; ++k) {
-      if (maxOccurence < ++cnt[arr[row + dx[k]][col + dy[k]]]) {
-        maxColor = arr[row + dx[k]][col + dy[k]];
-        maxOccurence = cnt[maxColor];
-      }
-    }
-    if (cnt[arr[row][col]] == maxOccurence) { // weight centre more
-      return arr[row][col];
-    } else {
-      return maxColor;
+  public static int reduce(GreyRaster arr, int col, int row) {
+    return mode(arr.get(col, row), arr.get(col + 1, row),
+        arr.get(col - 1, row), arr.get(col, row + 1), arr.get(col, row - 1));
+  }
+
+  /**
+   * Applies noise reduction to a run of pixels in one row, reading and
+   * writing flat arrays of grey values. Every pixel in the run must have all
+   * four neighbours in the array.
+   * 
+   * @param data the grey values of the picture
+   * @param index the index in data of the first pixel in the run
+   * @param stride the distance in data between two rows
+   * @param out the array where the reduced pixels are written
+   * @param outIndex the index in out of the first pixel in the run
+   * @param length the number of pixels in the run
+   */
+  public static void reduceRun(byte[] data, int index, int stride, byte[] out,
+      int outIndex, int length) {
+    for (int n = 0; n < length; ++n) {
+      int k = index + n;
+      out[outIndex + n] = (byte) mode(data[k], data[k + 1], data[k - 1],
+          data[k + stride], data[k - stride]);
     }
   }
 
   /**
    * Iterates over all the pixels in the input picture and creates a new picture
    * with noise reduction applied to it. Border pixels are not checked.
+   * <p>
+   * The picture is checked in tiles of TILE by TILE pixels first. If a tile
+   * and the pixels around it all have the same grey value, every pixel in the
+   * tile keeps that value, so the tile is filled without looking at the
+   * neighbourhood of each pixel. Uniform backgrounds such as sky are mostly
+   * made of such tiles.
    * 
-   * @param pic the picture which noise reduction must be applied to
-   * @return the picture produced by applying noise reduction
+   * @param pic the grey-scaled raster which noise reduction must be applied to
+   * @return the raster produced by applying noise reduction
    */
-  public static Picture getNoiseReduction(Picture pic) {
+  public static GreyRaster getNoiseReduction(GreyRaster pic) {
     int width = pic.width();
     int height = pic.height();
-    int[][] oldArr = Utility.getArrFromPic(pic);
-    int[][] newArr = new int[width][height];
+    GreyRaster newArr = new GreyRaster(width, height);
+
+    for (int i = 0; i < width; ++i) { // don't include borders
+      newArr.set(i, 0, pic.get(i, 0));
+      newArr.set(i, height - 1, pic.get(i, height - 1));
+    }
+    reduceRows(pic, newArr, 1, height - 1);
 
-    for (int i = 0; i < width; ++i) {
-      for (int j = 0; j < height; ++j) {
-        if (i == 0 || j == 0 || i == width - 1 || j == height - 1) {
-          newArr[i][j] = oldArr[i][j]; // don't include borders
-        } else {
-          newArr[i][j] = reduce(oldArr, i, j);
+    return newArr;
+  }
+
+  /**
+   * Applies noise reduction to a band of rows, in tiles as described for
+   * getNoiseReduction(). Only the rows of the band are written, and only the
+   * band and the rows above and below it are read, so several bands can be
+   * reduced into the same raster at once. The first and last pixel of each
+   * row are copied unchanged.
+   * 
+   * @param pic the grey-scaled raster which noise reduction must be applied to
+   * @param out the raster where the reduced rows are written
+   * @param fromRow the first row of the band, at least 1
+   * @param toRow the row after the last row of the band, at most height - 1
+   */
+  public static void reduceRows(GreyRaster pic, GreyRaster out, int fromRow,
+      int toRow) {
+    int width = pic.width();
+    for (int j = fromRow; j < toRow; ++j) {
+      out.set(0, j, pic.get(0, j));
+      out.set(width - 1, j, pic.get(width - 1, j));
+    }
+    for (int y0 = fromRow; y0 < toRow; y0 += TILE) {
+      int y1 = Math.min(y0 + TILE, toRow);
+      for (int x0 = 1; x0 < width - 1; x0 += TILE) {
+        int x1 = Math.min(x0 + TILE, width - 1);
+        if (pic.isUniform(x0 - 1, y0 - 1, x1 - x0 + 2, y1 - y0 + 2, 0)) {
+          out.fill(x0, y0, x1 - x0, y1 - y0, pic.get(x0, y0));
+          continue;
+        }
+        for (int j = y0; j < y1; ++j) {
+          PixelKernels.DEFAULT.reduceRun(pic.data(), pic.index(x0, j),
+              pic.stride(), out.data(), out.index(x0, j), x1 - x0);
         }
       }
     }
-
-    return Utility.getPicFromArr(newArr);
   }
 
   /**
@@ -70,7 +169,8 @@ public class NoiseReduction {
    * @param args the command line arguments
    */
   public static void main(String[] args) {
-    getNoiseReduction(new Picture(args[0])).show();
+    getNoiseReduction(GreyRaster.fromPicture(new Picture(args[0]))).toPicture()
+        .show();
   }
 
 }
@@ -0,0 +1,278 @@
+import java.util.Arrays;
+
+/**
+ * The OccupancyQuadtree class counts the white pixels in a picture of edges in
+ * small square tiles, and groups the tiles into a quadtree: each level has
+ * tiles twice as wide as the level below, and the count of a tile is the sum
+ * of the counts of the four tiles it covers. Large black regions such as sky
+ * or grass become a few tiles with a count of 0 near the top of the tree. The
+ * counts of the smallest tiles are kept in a summed-area table, so the count
+ * of any group of tiles takes the same time to find.
+ * <p>
+ * findMatches() walks down the tree treating each tile as a group of mask
+ * positions, and skips the whole group if no block at those positions can
+ * match. A block with wB white pixels differs from a mask with wM white cells
+ * by a sum of at least 255 * |wB - wM|, so a group is skipped if every block
+ * in it has too few white pixels (using the count of the tiles the blocks
+ * reach) or too many (using the count of the tiles every block covers).
+ * The smallest tiles which are left are then scanned column by column, in
+ * the order SpotDetection.findSpots() uses, and each position is checked in
+ * the same way against a summed-area table of the pixels before it is given
+ * to the matcher. So the same matches are found as by findSpots(), in time
+ * which grows with the amount of edges rather than the size of the picture.
+ * The bands of rows which ParallelSpotDetection gives to each thread can be
+ * searched on their own.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class OccupancyQuadtree {
+  /** The width of the smallest tiles, a power of two. */
+  public static final int LEAF = 8;
+
+  private final int width; // of the picture
+  private final int height;
+  private final int levels; // of the quadtree, with one tile at the top
+  private final int cols; // smallest tiles across the picture
+  private final int rows; // smallest tiles down the picture
+  private final int[] sums; // summed-area table of the smallest tiles
+  private final SummedAreaTable whitePixels; // for each position in a leaf
+
+  /**
+   * Creates the quadtree for the given picture of edges.
+   *
+   * @param edges the raster of edges
+   */
+  public OccupancyQuadtree(GreyRaster edges) {
+    this(edges, new SummedAreaTable(edges));
+  }
+
+  /**
+   * Creates the quadtree for the given picture of edges, using the given
+   * summed-area table of it to skip single positions in the smallest tiles.
+   *
+   * @param edges the raster of edges
+   * @param whitePixels the summed-area table of the raster of edges
+   */
+  public OccupancyQuadtree(GreyRaster edges, SummedAreaTable whitePixels) {
+    this.whitePixels = whitePixels;
+    width = edges.width();
+    height = edges.height();
+    int depth = 1;
+    while ((LEAF << (depth - 1)) < Math.max(width, height)) {
+      depth++;
+    }
+    levels = depth;
+    cols = (width + LEAF - 1) / LEAF;
+    rows = (height + LEAF - 1) / LEAF;
+    int[] counts = new int[cols * rows];
+    for (int j = 0; j < height; ++j) {
+      for (int i = 0; i < width; ++i) {
+        if (edges.get(i, j) != 0) {
+          counts[(j / LEAF) * cols + i / LEAF]++;
+        }
+      }
+    }
+    int stride = cols + 1;
+    sums = new int[stride * (rows + 1)];
+    for (int ty = 0; ty < rows; ++ty) {
+      for (int tx = 0; tx < cols; ++tx) {
+        sums[(ty + 1) * stride + tx + 1] = counts[ty * cols + tx]
+            + sums[ty * stride + tx + 1] + sums[(ty + 1) * stride + tx]
+            - sums[ty * stride + tx];
+      }
+    }
+  }
+
+  /**
+   * Returns the number of white pixels in a rectangle of the smallest tiles.
+   *
+   * @param tx0 the first column of tiles
+   * @param ty0 the first row of tiles
+   * @param tx1 the column after the last column of tiles
+   * @param ty1 the row after the last row of tiles
+   * @return the number of white pixels, or 0 if the rectangle is empty
+   */
+  private int tiles(int tx0, int ty0, int tx1, int ty1) {
+    tx0 = Math.max(0, tx0);
+    ty0 = Math.max(0, ty0);
+    tx1 = Math.min(cols, tx1);
+    ty1 = Math.min(rows, ty1);
+    if (tx0 >= tx1 || ty0 >= ty1) {
+      return 0;
+    }
+    int stride = cols + 1;
+    return sums[ty1 * stride + tx1] - sums[ty0 * stride + tx1]
+        - sums[ty1 * stride + tx0] + sums[ty0 * stride + tx0];
+  }
+
+  /**
+   * Returns the count of every tile the rectangle touches, which is at least
+   * the number of white pixels in it.
+   *
+   * @param col the first column of the rectangle
+   * @param row the first row of the rectangle
+   * @param w the width of the rectangle
+   * @param h the height of the rectangle
+   * @return the upper bound
+   */
+  public int upperCount(int col, int row, int w, int h) {
+    return tiles(Math.floorDiv(col, LEAF), Math.floorDiv(row, LEAF),
+        Math.floorDiv(col + w + LEAF - 1, LEAF),
+        Math.floorDiv(row + h + LEAF - 1, LEAF));
+  }
+
+  /**
+   * Returns the count of every tile inside the rectangle, which is at most
+   * the number of white pixels in it.
+   *
+   * @param col the first column of the rectangle
+   * @param row the first row of the rectangle
+   * @param w the width of the rectangle
+   * @param h the height of the rectangle
+   * @return the lower bound
+   */
+  public int lowerCount(int col, int row, int w, int h) {
+    if (w <= 0 || h <= 0) {
+      return 0;
+    }
+    // the last tiles of the picture are inside if the rectangle reaches
+    // the edge of the picture
+    int tx1 = col + w >= width ? cols : Math.floorDiv(col + w, LEAF);
+    int ty1 = row + h >= height ? rows : Math.floorDiv(row + h, LEAF);
+    return tiles(Math.floorDiv(col + LEAF - 1, LEAF),
+        Math.floorDiv(row + LEAF - 1, LEAF), tx1, ty1);
+  }
+
+  /**
+   * Finds the positions where the mask matches, skipping the tiles where no
+   * block can match.
+   *
+   * @param matcher the matcher for the raster of edges
+   * @param mask the spot mask
+   * @param diff the maximum sum of differences for a spot
+   * @return the matching positions, each stored as (col &lt;&lt; 32) | row, in
+   *         the order findSpots() visits them
+   */
+  public long[] findMatches(SpotMatcher matcher, RingMask mask, int diff) {
+    matcher.prepare(mask);
+    return findMatches(matcher, mask, diff, 0, height);
+  }
+
+  /**
+   * Finds the positions in a band of rows where the mask matches, skipping
+   * the tiles where no block can match. The matcher must already have been
+   * prepared for the mask, so several bands can be searched at once.
+   *
+   * @param matcher the matcher for the raster of edges, prepared for the
+   *        mask
+   * @param mask the spot mask
+   * @param diff the maximum sum of differences for a spot
+   * @param fromRow the first row of the band
+   * @param toRow the row after the last row of the band
+   * @return the matching positions, each stored as (col &lt;&lt; 32) | row, in
+   *         the order findSpots() visits them
+   */
+  public long[] findMatches(SpotMatcher matcher, RingMask mask, int diff,
+      int fromRow, int toRow) {
+    int positionCols = width - mask.width();
+    int positionRows = Math.min(toRow, height - mask.width());
+    if (positionCols <= 0 || positionRows <= fromRow) {
+      return new long[0];
+    }
+    boolean[] live = new boolean[cols * rows];
+    search(levels - 1, 0, 0, mask, diff, positionCols, fromRow,
+        positionRows, live);
+    // the live tiles are scanned in the order of findSpots(), which keeps
+    // the rows the matcher reads in the cache from one position to the next
+    long[] matches = new long[16];
+    int n = 0;
+    for (int i = 0; i < positionCols; ++i) {
+      int tx = i / LEAF;
+      for (int j = fromRow; j < positionRows; ++j) {
+        if (!live[(j / LEAF) * cols + tx]) {
+          j |= LEAF - 1; // skip to the last row of the tile
+        } else if (whitePixels.mayMatch(mask, i, j, diff)
+            && matcher.matches(mask, i, j, diff)) {
+          if (n == matches.length) {
+            matches = Arrays.copyOf(matches, 2 * n);
+          }
+          matches[n++] = ((long) i << 32) | j;
+        }
+      }
+    }
+    return Arrays.copyOf(matches, n);
+  }
+
+  /**
+   * Marks the smallest tiles under a tile which have positions where a block
+   * can match, unless no block in the tile can match.
+   *
+   * @param level the level of the tile
+   * @param tx the column of the tile
+   * @param ty the row of the tile
+   * @param mask the spot mask
+   * @param diff the maximum sum of differences for a spot
+   * @param positionCols the number of columns the mask can be placed at
+   * @param fromRow the first row the mask is placed at
+   * @param toRow the row after the last row the mask is placed at
+   * @param live where the smallest tiles which are left are marked
+   */
+  private void search(int level, int tx, int ty, RingMask mask, int diff,
+      int positionCols, int fromRow, int toRow, boolean[] live) {
+    int size = LEAF << level;
+    int x0 = tx * size;
+    int y0 = Math.max(fromRow, ty * size);
+    int x1 = Math.min(positionCols, x0 + size);
+    int y1 = Math.min(toRow, ty * size + size);
+    if (x0 >= x1 || y0 >= y1) {
+      return; // no positions in this tile
+    }
+    int maskWidth = mask.width();
+    int white = mask.whiteCount();
+    // every block here is inside the pixels reached from the tile ...
+    int most = upperCount(x0, y0, x1 - x0 + maskWidth - 1,
+        y1 - y0 + maskWidth - 1);
+    if (most == 0 || 255L * (white - most) >= diff) {
+      return; // every block is empty, or has too few white pixels
+    }
+    // ... and covers the pixels reached from every position in the tile
+    int least = lowerCount(x1 - 1, y1 - 1, x0 + maskWidth - x1 + 1,
+        y0 + maskWidth - y1 + 1);
+    if (255L * (least - white) >= diff) {
+      return; // every block has too many white pixels
+    }
+    if (level > 0) {
+      for (int u = 2 * tx; u <= 2 * tx + 1; ++u) {
+        for (int v = 2 * ty; v <= 2 * ty + 1; ++v) {
+          search(level - 1, u, v, mask, diff, positionCols, fromRow, toRow,
+              live);
+        }
+      }
+      return;
+    }
+    live[ty * cols + tx] = true;
+  }
+
+  /**
+   * Unit tests the OccupancyQuadtree class by counting the spots in the given
+   * picture of edges with and without the quadtree, and printing the time
+   * each takes.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster edges = GreyRaster.fromPicture(new Picture(args[0]));
+    int r1 = Integer.parseInt(args[1]);
+    int r2 = Integer.parseInt(args[2]);
+    long start = System.nanoTime();
+    SpotDetection.detectSpots(edges, r1, r2, new DefaultMatcher(edges));
+    StdOut.println("whole picture: " + (System.nanoTime() - start) / 1000000
+        + "ms");
+    start = System.nanoTime();
+    SpotDetection.detectSpots(edges, r1, r2); // with the quadtree
+    StdOut.println("with quadtree: " + (System.nanoTime() - start) / 1000000
+        + "ms");
+  }
+
+}
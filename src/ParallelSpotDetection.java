@@ -0,0 +1,197 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The ParallelSpotDetection class counts spots in the same way as
+ * SpotDetection, but moves each mask over the picture on several threads. The
+ * rows of the picture are split into bands, and each band only records the
+ * positions where the mask matches. Whether a block matches doesn't depend on
+ * which spots have been counted, so the matches can be found in any order.
+ * They are then painted and counted on a single thread in the order that
+ * SpotDetection.findSpots() would have found them, so the number of spots is
+ * the same no matter how many threads are used.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class ParallelSpotDetection {
+
+  /**
+   * Finds the positions in a band of rows where the mask matches the block it
+   * covers, in the order findSpots() visits them.
+   *
+   * @param matcher the matcher which checks if image blocks contain spots
+   * @param mask the spot mask
+   * @param diff the maximum sum of differences for a spot
+   * @param cols the number of columns the mask can be placed at
+   * @param fromRow the first row of the band
+   * @param toRow the row after the last row of the band
+   * @return the matching positions, each stored as (col &lt;&lt; 32) | row
+   */
+  public static long[] scanBand(SpotMatcher matcher, RingMask mask, int diff,
+      int cols, int fromRow, int toRow) {
+    long[] matches = new long[16];
+    int n = 0;
+    for (int i = 0; i < cols; ++i) {
+      for (int j = fromRow; j < toRow; ++j) {
+        if (matcher.matches(mask, i, j, diff)) {
+          if (n == matches.length) {
+            matches = Arrays.copyOf(matches, 2 * n);
+          }
+          matches[n++] = ((long) i << 32) | j;
+        }
+      }
+    }
+    return Arrays.copyOf(matches, n);
+  }
+
+  /**
+   * Finds every position where the mask matches, using the threads in the
+   * pool. The picture is split into several bands per thread so that the work
+   * stays balanced when some bands contain more edges than others, and each
+   * band is searched with the quadtree, skipping the tiles where no block can
+   * match.
+   *
+   * @param matcher the matcher which checks if image blocks contain spots
+   * @param edges the raster of edges
+   * @param occupancy the quadtree of white pixels in the raster of edges
+   * @param mask the spot mask
+   * @param diff the maximum sum of differences for a spot
+   * @param pool the threads to use
+   * @return the matching positions in the order findSpots() visits them
+   */
+  public static long[] findMatches(SpotMatcher matcher, GreyRaster edges,
+      OccupancyQuadtree occupancy, RingMask mask, int diff,
+      ForkJoinPool pool) {
+    int cols = edges.width() - mask.width();
+    int rows = edges.height() - mask.width();
+    if (cols <= 0 || rows <= 0) {
+      return new long[0];
+    }
+    matcher.prepare(mask);
+    int bands = Math.min(rows, 4 * pool.getParallelism());
+    List<Callable<long[]>> tasks = new ArrayList<>();
+    for (int b = 0; b < bands; ++b) {
+      int fromRow = (int) ((long) rows * b / bands);
+      int toRow = (int) ((long) rows * (b + 1) / bands);
+      tasks.add(() -> occupancy.findMatches(matcher, mask, diff, fromRow,
+          toRow));
+    }
+    List<long[]> results = ParallelStages.invokeAll(pool, tasks);
+    int total = 0;
+    for (long[] result : results) {
+      total += result.length;
+    }
+    long[] matches = new long[total];
+    int n = 0;
+    for (long[] result : results) {
+      System.arraycopy(result, 0, matches, n, result.length);
+      n += result.length;
+    }
+    Arrays.sort(matches); // by column, then by row, as in findSpots()
+    return matches;
+  }
+
+  /**
+   * Creates and returns a new raster of spots found in the given raster of
+   * edges, using the threads in the pool and the same DefaultMatcher and
+   * OccupancyQuadtree as SpotDetection.detectSpots().
+   *
+   * @param edges the raster containing edges
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @param pool the threads to use
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2,
+      ForkJoinPool pool) {
+    SummedAreaTable whitePixels = new SummedAreaTable(edges);
+    return detectSpots(edges, r1, r2, new DefaultMatcher(edges, whitePixels),
+        MaskBank.DEFAULT, new OccupancyQuadtree(edges, whitePixels), pool);
+  }
+
+  /**
+   * Creates and returns a new raster of spots found in the given raster of
+   * edges, using the threads in the pool. Prints the number of spots, which is
+   * the same as the number printed by SpotDetection.detectSpots().
+   *
+   * @param edges the raster containing edges
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @param matcher the matcher for the raster of edges
+   * @param pool the threads to use
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2,
+      SpotMatcher matcher, ForkJoinPool pool) {
+    return detectSpots(edges, r1, r2, matcher, MaskBank.DEFAULT, pool);
+  }
+
+  /**
+   * Creates and returns a new raster of spots found in the given raster of
+   * edges, using the given matcher, the masks in the given bank and the
+   * threads in the pool.
+   *
+   * @param edges the raster containing edges
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @param matcher the matcher for the raster of edges
+   * @param bank the masks and thresholds for each radius
+   * @param pool the threads to use
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2,
+      SpotMatcher matcher, MaskBank bank, ForkJoinPool pool) {
+    return detectSpots(edges, r1, r2, matcher, bank,
+        new OccupancyQuadtree(edges), pool);
+  }
+
+  /**
+   * Creates and returns a new raster of spots found in the given raster of
+   * edges, using the given matcher, the masks in the given bank, the
+   * quadtree and the threads in the pool.
+   *
+   * @param edges the raster containing edges
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @param matcher the matcher for the raster of edges
+   * @param bank the masks and thresholds for each radius
+   * @param occupancy the quadtree of white pixels in the raster of edges
+   * @param pool the threads to use
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2,
+      SpotMatcher matcher, MaskBank bank, OccupancyQuadtree occupancy,
+      ForkJoinPool pool) {
+    GreyRaster spots = new GreyRaster(edges.width(), edges.height());
+    SpotRegistry registry = new SpotRegistry();
+    int counter = 0;
+    for (int i = 0; i <= r2 - r1; ++i) {
+      long[] matches = findMatches(matcher, edges, occupancy,
+          bank.mask(r1, i), bank.difference(i), pool);
+      counter += SpotDetection.countMatches(edges, spots, registry,
+          bank.spotCounter(r1, i), matches);
+    }
+    StdOut.println(counter);
+    return spots;
+  }
+
+  /**
+   * Unit tests the ParallelSpotDetection class by counting the spots in the
+   * given picture of edges with the given number of threads.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster edges = GreyRaster.fromPicture(new Picture(args[0]));
+    int r1 = Integer.parseInt(args[1]);
+    int r2 = Integer.parseInt(args[2]);
+    ForkJoinPool pool = new ForkJoinPool(Integer.parseInt(args[3]));
+    detectSpots(edges, r1, r2, pool);
+    pool.shutdown();
+  }
+
+}
@@ -0,0 +1,159 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+/**
+ * The ParallelStages class applies noise reduction and edge detection on
+ * several threads. Both are cellular automata: each new pixel depends only on
+ * the old pixel and its four neighbours, so the interior rows are split into
+ * strips which are updated at once. A strip reads its own rows and the row
+ * above and below it (its halo) from the old raster, which no thread writes,
+ * and writes only its own rows of the shared new raster, so the threads never
+ * touch the same bytes. The new raster is the same, byte for byte, as the
+ * one the single-threaded stage creates.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class ParallelStages {
+  /** The number of strips per thread, so that the work stays balanced. */
+  public static final int STRIPS_PER_THREAD = 4;
+
+  /**
+   * Creates a new raster with noise reduction applied to the input raster,
+   * using the threads in the pool.
+   *
+   * @param pic the grey-scaled raster which noise reduction must be applied to
+   * @param pool the threads to use
+   * @return the raster produced by applying noise reduction, the same as
+   *         NoiseReduction.getNoiseReduction(pic)
+   */
+  public static GreyRaster getNoiseReduction(GreyRaster pic,
+      ForkJoinPool pool) {
+    int width = pic.width();
+    int height = pic.height();
+    GreyRaster newArr = new GreyRaster(width, height);
+    for (int i = 0; i < width; ++i) { // don't include borders
+      newArr.set(i, 0, pic.get(i, 0));
+      newArr.set(i, height - 1, pic.get(i, height - 1));
+    }
+    runStrips(height, pool, (fromRow, toRow) -> NoiseReduction
+        .reduceRows(pic, newArr, fromRow, toRow));
+    return newArr;
+  }
+
+  /**
+   * Creates a new raster of the edges in the input raster, using the threads
+   * in the pool.
+   *
+   * @param pic the grey-scaled, noise reduced input raster
+   * @param epsilon the threshold value for determining if central pixels are
+   *        edges
+   * @param pool the threads to use
+   * @return the new raster of the edges, the same as
+   *         EdgeDetection.getEdgeDetected(pic, epsilon)
+   */
+  public static GreyRaster getEdgeDetected(GreyRaster pic, int epsilon,
+      ForkJoinPool pool) {
+    GreyRaster newArr = new GreyRaster(pic.width(), pic.height());
+    runStrips(pic.height(), pool, (fromRow, toRow) -> EdgeDetection
+        .detectRows(pic, newArr, fromRow, toRow, epsilon));
+    return newArr;
+  }
+
+  /**
+   * Splits the interior rows of a raster into strips and updates them on the
+   * threads in the pool, returning once every strip is done. The strips
+   * start at multiples of the tile height of the stages, so they are tiled
+   * in the same way as the whole raster.
+   *
+   * @param height the number of rows in the raster
+   * @param pool the threads to use
+   * @param strip updates the rows from the first up to the second
+   */
+  private static void runStrips(int height, ForkJoinPool pool,
+      BiConsumer<Integer, Integer> strip) {
+    int tile = NoiseReduction.TILE; // the same as EdgeDetection.TILE
+    int tiles = (height - 2 + tile - 1) / tile; // rows of tiles
+    if (tiles <= 0) {
+      return; // no interior rows
+    }
+    int strips = Math.min(tiles, STRIPS_PER_THREAD * pool.getParallelism());
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int s = 0; s < strips; ++s) {
+      int fromRow = 1 + tiles * s / strips * tile;
+      int toRow = Math.min(height - 1, 1 + tiles * (s + 1) / strips * tile);
+      tasks.add(() -> {
+        strip.accept(fromRow, toRow);
+        return null;
+      });
+    }
+    invokeAll(pool, tasks);
+  }
+
+  /**
+   * Runs the tasks on the threads in the pool and returns their results in
+   * the order of the tasks, once every task is done. A task which throws
+   * makes this method throw as well.
+   *
+   * @param <T> the type of the results
+   * @param pool the threads to use
+   * @param tasks the tasks to run
+   * @return the result of each task
+   * @throws IllegalStateException if a task fails or the calling thread is
+   *         interrupted while waiting
+   */
+  public static <T> List<T> invokeAll(ForkJoinPool pool,
+      List<Callable<T>> tasks) {
+    List<T> results = new ArrayList<>(tasks.size());
+    try {
+      for (Future<T> future : pool.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("task was interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("task failed", e.getCause());
+    }
+    return results;
+  }
+
+  /**
+   * Unit tests the ParallelStages class by applying noise reduction and edge
+   * detection to the given picture with 1, 2, 4, ... threads up to the given
+   * number (the number of processors if none is given), checking that the
+   * rasters are the same as the single-threaded stages give and printing the
+   * time each takes.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster grey = GreyReader.read(new File(args[0]));
+    int epsilon = Integer.parseInt(args[1]);
+    GreyRaster reduced = NoiseReduction.getNoiseReduction(grey);
+    GreyRaster edges = EdgeDetection.getEdgeDetected(reduced, epsilon);
+    int most = args.length > 2 ? Integer.parseInt(args[2])
+        : Runtime.getRuntime().availableProcessors();
+    double megapixels = grey.width() * (double) grey.height() / 1e6;
+    for (int threads = 1; threads <= most; threads *= 2) {
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      StdOut.println(threads + " threads, same: " + (Arrays.equals(
+          getNoiseReduction(grey, pool).data(), reduced.data())
+          && Arrays.equals(getEdgeDetected(reduced, epsilon, pool).data(),
+              edges.data())));
+      Bench.measure("reduce", megapixels,
+          () -> getNoiseReduction(grey, pool));
+      Bench.measure("detect", megapixels,
+          () -> getEdgeDetected(reduced, epsilon, pool));
+      pool.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The PeakCounter class holds the parts shared by the spot detectors which
+ * score candidate centers and then keep the best ones: HoughSpotDetection and
+ * DistanceSpotDetection. Both score the pixels on a circle of each radius
+ * around a center, and both count their peaks in the same way, best first,
+ * skipping any center which is inside a spot which has already been counted.
+ * The counted spots are kept in square cells as wide as the largest radius,
+ * so only the cell of a center and the 8 cells around it are searched.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class PeakCounter {
+
+  /**
+   * Returns the offsets of the pixels on a circle of the given radius around
+   * (0, 0), each pixel only once.
+   *
+   * @param radius the radius of the circle
+   * @return the column offsets in [0] and the row offsets in [1]
+   */
+  public static int[][] circle(int radius) {
+    boolean[][] seen = new boolean[2 * radius + 1][2 * radius + 1];
+    List<int[]> points = new ArrayList<>();
+    int steps = (int) Math.ceil(8 * Math.PI * radius);
+    for (int k = 0; k < steps; ++k) {
+      double angle = 2 * Math.PI * k / steps;
+      int dx = (int) Math.round(radius * Math.cos(angle));
+      int dy = (int) Math.round(radius * Math.sin(angle));
+      if (!seen[dx + radius][dy + radius]) {
+        seen[dx + radius][dy + radius] = true;
+        points.add(new int[] {dx, dy});
+      }
+    }
+    int[][] offsets = new int[2][points.size()];
+    for (int k = 0; k < points.size(); ++k) {
+      offsets[0][k] = points.get(k)[0];
+      offsets[1][k] = points.get(k)[1];
+    }
+    return offsets;
+  }
+
+  /**
+   * Packs the column and row of a cell into one key.
+   *
+   * @param cellCol the column of the cell
+   * @param cellRow the row of the cell
+   * @return the key of the cell
+   */
+  private static long key(int cellCol, int cellRow) {
+    return ((long) cellCol << 32) | (cellRow & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Checks whether a center is inside a spot which has already been counted,
+   * or a spot of the given radius there would contain the center of one.
+   * Only the cell of the center and the 8 cells around it are searched.
+   *
+   * @param cells the spots counted so far, by the cell of their center
+   * @param cell the width of the cells, at least the largest radius
+   * @param col the column of the center
+   * @param row the row of the center
+   * @param radius the radius of the peak
+   * @return true if the center is too close to a spot, else false
+   */
+  private static boolean isInside(HashMap<Long, List<int[]>> cells, int cell,
+      int col, int row, int radius) {
+    for (int cellRow = row / cell - 1; cellRow <= row / cell + 1; ++cellRow) {
+      for (int cellCol = col / cell - 1; cellCol <= col / cell + 1;
+          ++cellCol) {
+        List<int[]> spots = cells.get(key(cellCol, cellRow));
+        if (spots == null) {
+          continue;
+        }
+        for (int[] spot : spots) {
+          int dx = spot[0] - col;
+          int dy = spot[1] - row;
+          int reach = Math.max(spot[2], radius);
+          if (dx * dx + dy * dy < reach * reach) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Counts the best peaks as spots, skipping any peak whose center is inside a
+   * spot which has already been counted. Paints the edges of the spots white
+   * in a new raster and stores their centers and radii in the registry. Prints
+   * the number of spots.
+   *
+   * @param edges the raster containing edges
+   * @param peaks the peaks as {score, radius, row * width + col}, where a
+   *        higher score is a better spot; sorted by this method
+   * @param registry where the spots which are found are stored
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster countPeaks(GreyRaster edges, List<long[]> peaks,
+      SpotRegistry registry) {
+    int width = edges.width();
+    int height = edges.height();
+    // best first; ties go to the smaller radius, then the first center
+    peaks.sort((a, b) -> a[0] != b[0] ? Long.compare(b[0], a[0])
+        : a[1] != b[1] ? Long.compare(a[1], b[1]) : Long.compare(a[2], b[2]));
+    // the spots in square cells as wide as the largest radius, so a spot
+    // which a center is inside is in the cell of the center or next to it
+    int cell = 1;
+    for (long[] peak : peaks) {
+      cell = Math.max(cell, (int) peak[1]);
+    }
+    HashMap<Long, List<int[]>> cells = new HashMap<>();
+    List<int[]> spots = new ArrayList<>();
+    for (long[] peak : peaks) {
+      int radius = (int) peak[1];
+      int col = (int) (peak[2] % width);
+      int row = (int) (peak[2] / width);
+      if (!isInside(cells, cell, col, row, radius)) {
+        int[] spot = {col, row, radius};
+        spots.add(spot);
+        cells.computeIfAbsent(key(col / cell, row / cell),
+            k -> new ArrayList<>()).add(spot);
+        registry.addSpot(col, row, radius);
+      }
+    }
+    GreyRaster result = new GreyRaster(width, height);
+    for (int[] spot : spots) { // paint the edges near each circle
+      for (int j = Math.max(0, spot[1] - spot[2] - 1);
+          j <= Math.min(height - 1, spot[1] + spot[2] + 1); ++j) {
+        for (int i = Math.max(0, spot[0] - spot[2] - 1);
+            i <= Math.min(width - 1, spot[0] + spot[2] + 1); ++i) {
+          double distance = Math.hypot(i - spot[0], j - spot[1]);
+          if (Math.abs(distance - spot[2]) <= 1.5 && edges.get(i, j) != 0) {
+            result.set(i, j, 255);
+          }
+        }
+      }
+    }
+    StdOut.println(spots.size());
+    return result;
+  }
+
+}
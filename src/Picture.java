@@ -18,6 +18,12 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
@@ -367,6 +373,228 @@ public final class Picture implements ActionListener {
       image.setRGB(col, height - row - 1, rgb);
   }
 
+  private void validateRegion(int col, int row, int w, int h, int length, int offset,
+      int scansize) {
+    if (w < 0 || h < 0)
+      throw new IllegalArgumentException("region width and height must be non-negative");
+    if (w == 0 || h == 0)
+      return;
+    validateColumnIndex(col);
+    validateColumnIndex(col + w - 1);
+    validateRowIndex(row);
+    validateRowIndex(row + h - 1);
+    if (scansize < w || offset < 0 || offset + (long) (h - 1) * scansize + w > length)
+      throw new IllegalArgumentException("array is too small for a " + w + "-by-" + h + " region");
+  }
+
+  // returns the row of the underlying image which holds picture row {@code row}
+  private int imageRow(int row) {
+    return isOriginUpperLeft ? row : height - row - 1;
+  }
+
+  // reads {@code w} pixels of one image row straight from the data buffer when its layout is
+  // known, and through BufferedImage.getRGB() otherwise
+  private void readRow(int col, int imageRow, int w, int[] rgbArray, int offset) {
+    WritableRaster raster = image.getRaster();
+    DataBuffer buffer = raster.getDataBuffer();
+    int x = col - raster.getSampleModelTranslateX();
+    int y = imageRow - raster.getSampleModelTranslateY();
+    int type = image.getType();
+    if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+        && buffer instanceof DataBufferInt && buffer.getNumBanks() == 1) {
+      SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+      int[] data = ((DataBufferInt) buffer).getData();
+      int start = buffer.getOffset() + y * model.getScanlineStride() + x;
+      if (type == BufferedImage.TYPE_INT_ARGB) {
+        System.arraycopy(data, start, rgbArray, offset, w);
+      } else {
+        for (int i = 0; i < w; i++)
+          rgbArray[offset + i] = 0xFF000000 | data[start + i]; // opaque, as getRGB() returns
+      }
+    } else if (type == BufferedImage.TYPE_3BYTE_BGR && buffer instanceof DataBufferByte
+        && buffer.getNumBanks() == 1) {
+      PixelInterleavedSampleModel model = (PixelInterleavedSampleModel) raster.getSampleModel();
+      byte[] data = ((DataBufferByte) buffer).getData();
+      int start = buffer.getOffset() + y * model.getScanlineStride() + x * 3;
+      for (int i = 0, k = start; i < w; i++, k += 3) {
+        rgbArray[offset + i] = 0xFF000000 | (data[k + 2] & 0xFF) << 16 | (data[k + 1] & 0xFF) << 8
+            | (data[k] & 0xFF);
+      }
+    } else {
+      image.getRGB(col, imageRow, w, 1, rgbArray, offset, w);
+    }
+  }
+
+  // writes {@code w} pixels of one image row straight to the data buffer when its layout is
+  // known, and through BufferedImage.setRGB() otherwise
+  private void writeRow(int col, int imageRow, int w, int[] rgbArray, int offset) {
+    WritableRaster raster = image.getRaster();
+    DataBuffer buffer = raster.getDataBuffer();
+    int type = image.getType();
+    if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+        && buffer instanceof DataBufferInt && buffer.getNumBanks() == 1) {
+      SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+      int[] data = ((DataBufferInt) buffer).getData();
+      int start = buffer.getOffset()
+          + (imageRow - raster.getSampleModelTranslateY()) * model.getScanlineStride() + col
+          - raster.getSampleModelTranslateX();
+      if (type == BufferedImage.TYPE_INT_ARGB) {
+        System.arraycopy(rgbArray, offset, data, start, w);
+      } else {
+        for (int i = 0; i < w; i++)
+          data[start + i] = rgbArray[offset + i] & 0xFFFFFF; // no alpha, as setRGB() stores
+      }
+    } else {
+      image.setRGB(col, imageRow, w, 1, rgbArray, offset, w);
+    }
+  }
+
+  /**
+   * Reads the colors of a rectangular region of pixels into {@code rgbArray}. Pixel
+   * ({@code col + i}, {@code row + j}) is stored at {@code rgbArray[offset + j * scansize + i]}
+   * using the same encoding as {@link #getRGB(int, int)}. When the picture is backed by an
+   * {@code int} or 3-byte BGR data buffer, the pixels are copied straight from the buffer, which
+   * is much faster than calling {@link #getRGB(int, int)} once for every pixel.
+   *
+   * @param col the column index of the top-left pixel of the region
+   * @param row the row index of the top-left pixel of the region
+   * @param w the width of the region
+   * @param h the height of the region
+   * @param rgbArray the array where the colors are written
+   * @param offset the index in {@code rgbArray} of the first pixel
+   * @param scansize the distance between the start of two rows in {@code rgbArray}
+   * @return {@code rgbArray}
+   * @throws IllegalArgumentException if the region is outside the picture or does not fit in
+   *         {@code rgbArray}
+   */
+  public int[] getRGB(int col, int row, int w, int h, int[] rgbArray, int offset, int scansize) {
+    if (rgbArray == null)
+      throw new IllegalArgumentException("array argument is null");
+    validateRegion(col, row, w, h, rgbArray.length, offset, scansize);
+    for (int j = 0; j < h; j++)
+      readRow(col, imageRow(row + j), w, rgbArray, offset + j * scansize);
+    return rgbArray;
+  }
+
+  /**
+   * Reads the colors of all the pixels in row {@code row} into {@code rgbArray}.
+   *
+   * @param row the row index
+   * @param rgbArray the array of length at least {@code width} where the colors are written
+   * @return {@code rgbArray}
+   * @throws IllegalArgumentException unless {@code 0 <= row < height} and {@code rgbArray} is
+   *         long enough
+   */
+  public int[] getRGB(int row, int[] rgbArray) {
+    return getRGB(0, row, width, 1, rgbArray, 0, width);
+  }
+
+  /**
+   * Returns the colors of all the pixels in the picture in row-major order, so that pixel
+   * ({@code col}, {@code row}) is at index {@code row * width + col}.
+   *
+   * @return the colors of all the pixels
+   */
+  public int[] getRGB() {
+    return getRGB(0, 0, width, height, new int[width * height], 0, width);
+  }
+
+  /**
+   * Sets the colors of a rectangular region of pixels from {@code rgbArray}. Pixel
+   * ({@code col + i}, {@code row + j}) is set to {@code rgbArray[offset + j * scansize + i]}.
+   *
+   * @param col the column index of the top-left pixel of the region
+   * @param row the row index of the top-left pixel of the region
+   * @param w the width of the region
+   * @param h the height of the region
+   * @param rgbArray the array containing the colors
+   * @param offset the index in {@code rgbArray} of the first pixel
+   * @param scansize the distance between the start of two rows in {@code rgbArray}
+   * @throws IllegalArgumentException if the region is outside the picture or does not fit in
+   *         {@code rgbArray}
+   */
+  public void setRGB(int col, int row, int w, int h, int[] rgbArray, int offset, int scansize) {
+    if (rgbArray == null)
+      throw new IllegalArgumentException("array argument is null");
+    validateRegion(col, row, w, h, rgbArray.length, offset, scansize);
+    for (int j = 0; j < h; j++)
+      writeRow(col, imageRow(row + j), w, rgbArray, offset + j * scansize);
+  }
+
+  /**
+   * Sets the colors of all the pixels in row {@code row} from {@code rgbArray}.
+   *
+   * @param row the row index
+   * @param rgbArray the array of length at least {@code width} containing the colors
+   * @throws IllegalArgumentException unless {@code 0 <= row < height} and {@code rgbArray} is
+   *         long enough
+   */
+  public void setRGB(int row, int[] rgbArray) {
+    setRGB(0, row, width, 1, rgbArray, 0, width);
+  }
+
+  /**
+   * Reads the grey values of a rectangular region of a grey-scale picture into
+   * {@code greyArray}, laid out as in {@link #getRGB(int, int, int, int, int[], int, int)}. Since
+   * the red, green and blue components of a grey pixel are equal, the red component is used.
+   *
+   * @param col the column index of the top-left pixel of the region
+   * @param row the row index of the top-left pixel of the region
+   * @param w the width of the region
+   * @param h the height of the region
+   * @param greyArray the array where the grey values are written
+   * @param offset the index in {@code greyArray} of the first pixel
+   * @param scansize the distance between the start of two rows in {@code greyArray}
+   * @return {@code greyArray}
+   * @throws IllegalArgumentException if the region is outside the picture or does not fit in
+   *         {@code greyArray}
+   */
+  public byte[] getGrey(int col, int row, int w, int h, byte[] greyArray, int offset,
+      int scansize) {
+    if (greyArray == null)
+      throw new IllegalArgumentException("array argument is null");
+    validateRegion(col, row, w, h, greyArray.length, offset, scansize);
+    int[] rgbRow = new int[w];
+    for (int j = 0; j < h; j++) {
+      readRow(col, imageRow(row + j), w, rgbRow, 0);
+      int start = offset + j * scansize;
+      for (int i = 0; i < w; i++)
+        greyArray[start + i] = (byte) (rgbRow[i] >> 16);
+    }
+    return greyArray;
+  }
+
+  /**
+   * Sets a rectangular region of pixels to the grey values in {@code greyArray}, laid out as in
+   * {@link #setRGB(int, int, int, int, int[], int, int)}. Each value is treated as unsigned, so
+   * {@code (byte) 255} is white.
+   *
+   * @param col the column index of the top-left pixel of the region
+   * @param row the row index of the top-left pixel of the region
+   * @param w the width of the region
+   * @param h the height of the region
+   * @param greyArray the array containing the grey values
+   * @param offset the index in {@code greyArray} of the first pixel
+   * @param scansize the distance between the start of two rows in {@code greyArray}
+   * @throws IllegalArgumentException if the region is outside the picture or does not fit in
+   *         {@code greyArray}
+   */
+  public void setGrey(int col, int row, int w, int h, byte[] greyArray, int offset,
+      int scansize) {
+    if (greyArray == null)
+      throw new IllegalArgumentException("array argument is null");
+    validateRegion(col, row, w, h, greyArray.length, offset, scansize);
+    int[] rgbRow = new int[w];
+    for (int j = 0; j < h; j++) {
+      int start = offset + j * scansize;
+      for (int i = 0; i < w; i++) {
+        int grey = greyArray[start + i] & 0xFF;
+        rgbRow[i] = 0xFF000000 | grey << 16 | grey << 8 | grey;
+      }
+      writeRow(col, imageRow(row + j), w, rgbRow, 0);
+    }
+  }
+
   /**
    * Returns true if this picture is equal to the argument picture.
    *
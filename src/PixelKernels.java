@@ -0,0 +1,93 @@
+/**
+ * A PixelKernels runs the inner loops of the pixel-wise stages (grey-scaling,
+ * noise reduction and edge detection) over a run of pixels in one row. The
+ * stages split the picture into runs and hand each one to DEFAULT, so the
+ * loops can be swapped for faster ones without changing the stages. Every
+ * implementation must give exactly the same output as ScalarKernels.
+ * <p>
+ * DEFAULT is VectorKernels, which uses the incubating Vector API, if the
+ * program was started with {@code --add-modules jdk.incubator.vector} and
+ * VectorKernels is on the class path. Otherwise it is ScalarKernels. Running
+ * with {@code -Dkernels=scalar} always picks ScalarKernels.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public interface PixelKernels {
+  /** The kernels used by GreyScale, NoiseReduction and EdgeDetection. */
+  PixelKernels DEFAULT = load();
+
+  /**
+   * Grey-scales a row of packed RGB values into a row of bytes, in the same
+   * way as GreyScale.getGrey().
+   *
+   * @param rgb the packed RGB values
+   * @param sums a scratch array at least length long
+   * @param out the array where the grey values are written
+   * @param outIndex the index in out of the first grey value
+   * @param length the number of pixels
+   */
+  void greyRow(int[] rgb, int[] sums, byte[] out, int outIndex, int length);
+
+  /**
+   * Applies noise reduction to a run of pixels in one row, in the same way as
+   * NoiseReduction.mode(). Every pixel in the run must have all four
+   * neighbours in the array.
+   *
+   * @param data the grey values of the picture
+   * @param index the index in data of the first pixel in the run
+   * @param stride the distance in data between two rows
+   * @param out the array where the reduced pixels are written
+   * @param outIndex the index in out of the first pixel in the run
+   * @param length the number of pixels in the run
+   */
+  void reduceRun(byte[] data, int index, int stride, byte[] out,
+      int outIndex, int length);
+
+  /**
+   * Detects the edges in a run of pixels of one row, in the same way as
+   * EdgeDetection.detect(). Every pixel in the run must have all four
+   * neighbours in the array.
+   *
+   * @param data the grey values of the picture
+   * @param index the index in data of the first pixel in the run
+   * @param stride the distance in data between two rows
+   * @param out the array where the edges (0 or 255) are written
+   * @param outIndex the index in out of the first pixel in the run
+   * @param length the number of pixels in the run
+   * @param epsilon the threshold value
+   */
+  void detectRun(byte[] data, int index, int stride, byte[] out,
+      int outIndex, int length, int epsilon);
+
+  /**
+   * Returns the name of the kernels, for printing.
+   *
+   * @return the name
+   */
+  default String name() {
+    return getClass().getName();
+  }
+
+  /**
+   * Picks the fastest kernels which can run: VectorKernels if the Vector API
+   * module was added to the program and the class can be loaded, else
+   * ScalarKernels.
+   *
+   * @return the kernels
+   */
+  static PixelKernels load() {
+    if ("scalar".equals(System.getProperty("kernels"))
+        || !ModuleLayer.boot().findModule("jdk.incubator.vector")
+            .isPresent()) {
+      return new ScalarKernels();
+    }
+    try {
+      return (PixelKernels) Class.forName("VectorKernels")
+          .getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return new ScalarKernels(); // not compiled, or not supported here
+    }
+  }
+
+}
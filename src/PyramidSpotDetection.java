@@ -0,0 +1,197 @@
+import java.util.Arrays;
+
+/**
+ * The PyramidSpotDetection class counts spots by first searching a smaller
+ * copy of the picture of edges, and then only checking the places it found at
+ * full size. The smaller copy is made by OR-pooling: each pixel of the copy is
+ * white if any pixel of the factor-by-factor square it covers is white, so
+ * thin edges aren't lost. Each mask is pooled in the same way, and is matched
+ * against the small copy with a threshold scaled down by the factor (the
+ * length of a ring shrinks with the factor) and widened by COARSE_SLACK.
+ * <p>
+ * Every position where a pooled mask matches marks the full size positions
+ * within one factor of it as candidates, and only the candidates are compared
+ * with the full size mask, in the order findSpots() visits them. Spots which
+ * the pooled masks miss are lost, so fewer spots can be counted than by
+ * SpotDetection.detectSpots(); main() prints how many.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class PyramidSpotDetection {
+  /**
+   * How much the threshold of the pooled masks is widened. Without it one
+   * full size match was missed in two of the sample pictures pooled by 2;
+   * with it none were missed in any sample pooled by 2 or 4.
+   */
+  public static final double COARSE_SLACK = 1.25;
+
+  /**
+   * Returns a copy of the raster shrunk by the factor, where each pixel is
+   * white if any of the pixels it covers is white.
+   *
+   * @param edges the raster of edges
+   * @param factor how many pixels across each pixel of the copy covers
+   * @return the pooled raster
+   */
+  public static GreyRaster pool(GreyRaster edges, int factor) {
+    if (factor < 1) {
+      throw new IllegalArgumentException("factor must be at least 1");
+    }
+    int width = (edges.width() + factor - 1) / factor;
+    int height = (edges.height() + factor - 1) / factor;
+    GreyRaster pooled = new GreyRaster(width, height);
+    for (int j = 0; j < edges.height(); ++j) {
+      for (int i = 0; i < edges.width(); ++i) {
+        if (edges.get(i, j) != 0) {
+          pooled.set(i / factor, j / factor, 255);
+        }
+      }
+    }
+    return pooled;
+  }
+
+  /**
+   * Returns a copy of the mask shrunk by the factor, where each cell is white
+   * if any of the cells it covers is white.
+   *
+   * @param mask the spot mask
+   * @param factor how many cells across each cell of the copy covers
+   * @return the pooled mask
+   */
+  public static RingMask pool(RingMask mask, int factor) {
+    int width = (mask.width() + factor - 1) / factor;
+    int[][] pooled = new int[width][width];
+    for (int k = 0; k < mask.whiteCount(); ++k) {
+      pooled[mask.dx(k) / factor][mask.dy(k) / factor] = 255;
+    }
+    return new RingMask(pooled);
+  }
+
+  /**
+   * Finds the positions where the mask matches, only checking the full size
+   * positions near a position where the pooled mask matches the pooled edges.
+   *
+   * @param edges the raster of edges
+   * @param matcher the matcher for the raster of edges
+   * @param pooled the raster of edges pooled by the factor
+   * @param coarse the matcher for the pooled edges
+   * @param factor the factor the edges were pooled by
+   * @param mask the spot mask
+   * @param diff the maximum sum of differences for a spot
+   * @return the matching positions, each stored as (col &lt;&lt; 32) | row, in
+   *         the order findSpots() visits them
+   */
+  public static long[] findMatches(GreyRaster edges, SpotMatcher matcher,
+      GreyRaster pooled, SpotMatcher coarse, int factor, RingMask mask,
+      int diff) {
+    int cols = edges.width() - mask.width();
+    int rows = edges.height() - mask.width();
+    RingMask small = pool(mask, factor);
+    int smallDiff = (int) (COARSE_SLACK * diff / factor);
+    int width = pooled.width();
+    int height = pooled.height();
+    boolean[] near = new boolean[width * height]; // near a coarse match
+    coarse.prepare(small);
+    for (int ci = 0; ci <= width - small.width(); ++ci) {
+      for (int cj = 0; cj <= height - small.width(); ++cj) {
+        if (!coarse.matches(small, ci, cj, smallDiff)) {
+          continue;
+        }
+        for (int u = Math.max(0, ci - 1); u <= Math.min(width - 1, ci + 1);
+            ++u) {
+          for (int v = Math.max(0, cj - 1); v <= Math.min(height - 1, cj + 1);
+              ++v) {
+            near[v * width + u] = true;
+          }
+        }
+      }
+    }
+    long[] matches = new long[16];
+    int m = 0;
+    matcher.prepare(mask);
+    for (int i = 0; i < cols; ++i) {
+      for (int j = 0; j < rows; ++j) {
+        if (near[(j / factor) * width + i / factor]
+            && matcher.matches(mask, i, j, diff)) {
+          if (m == matches.length) {
+            matches = Arrays.copyOf(matches, 2 * m);
+          }
+          matches[m++] = ((long) i << 32) | j;
+        }
+      }
+    }
+    return Arrays.copyOf(matches, m);
+  }
+
+  /**
+   * Creates and returns a new raster of spots found in the given raster of
+   * edges, searching a copy pooled by the factor first. Both sizes are
+   * compared with a DefaultMatcher, so masks of any width can be used. Prints
+   * the number of spots.
+   *
+   * @param edges the raster containing edges, with only 0 and 255
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @param factor the factor to pool the edges by, such as 2 or 4
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2,
+      int factor) {
+    GreyRaster pooled = pool(edges, factor);
+    SpotMatcher matcher = new DefaultMatcher(edges);
+    SpotMatcher coarse = new DefaultMatcher(pooled);
+    GreyRaster spots = new GreyRaster(edges.width(), edges.height());
+    SpotRegistry registry = new SpotRegistry();
+    int counter = 0;
+    for (int i = 0; i <= r2 - r1; ++i) {
+      long[] matches = findMatches(edges, matcher, pooled, coarse, factor,
+          MaskBank.DEFAULT.mask(r1, i), MaskBank.DEFAULT.difference(i));
+      counter += SpotDetection.countMatches(edges, spots, registry,
+          MaskBank.DEFAULT.spotCounter(r1, i), matches);
+    }
+    StdOut.println(counter);
+    return spots;
+  }
+
+  /**
+   * Unit tests the PyramidSpotDetection class by counting the spots in the
+   * given picture of edges at full size and with the given pooling factor, and
+   * printing the time each takes and how many of the full size matches were
+   * found.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster edges = GreyRaster.fromPicture(new Picture(args[0]));
+    int r1 = Integer.parseInt(args[1]);
+    int r2 = Integer.parseInt(args[2]);
+    int factor = Integer.parseInt(args[3]);
+    long start = System.nanoTime();
+    SpotDetection.detectSpots(edges, r1, r2);
+    StdOut.println("full size: " + (System.nanoTime() - start) / 1000000
+        + "ms");
+    start = System.nanoTime();
+    detectSpots(edges, r1, r2, factor);
+    StdOut.println("pooled by " + factor + ": "
+        + (System.nanoTime() - start) / 1000000 + "ms");
+    GreyRaster pooled = pool(edges, factor);
+    SpotMatcher matcher = new DefaultMatcher(edges);
+    SpotMatcher coarse = new DefaultMatcher(pooled);
+    int all = 0;
+    int found = 0;
+    for (int i = 0; i <= r2 - r1; ++i) {
+      RingMask mask = MaskBank.DEFAULT.mask(r1, i);
+      int diff = MaskBank.DEFAULT.difference(i);
+      matcher.prepare(mask);
+      all += ParallelSpotDetection.scanBand(matcher, mask, diff,
+          edges.width() - mask.width(), 0,
+          Math.max(0, edges.height() - mask.width())).length;
+      found += findMatches(edges, matcher, pooled, coarse, factor, mask,
+          diff).length;
+    }
+    StdOut.printf("matches found: %d of %d (recall %.3f)\n", found, all,
+        all == 0 ? 1.0 : (double) found / all);
+  }
+
+}
@@ -0,0 +1,152 @@
+/**
+ * The RingMask class stores a spot mask created by SpotDetection.createMask()
+ * in a form that is quicker to match against a picture of edges. Most of the
+ * cells in a mask are black, so as well as the mask itself the positions of
+ * its white cells are stored in a list of offsets, along with the number of
+ * white cells. Masks up to 64 cells wide also have each of their rows packed
+ * into a long, for comparing with a BitEdgeMap. A RingMask can't be changed
+ * once it has been created, so the same mask can be shared by every thread
+ * (see MaskBank).
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class RingMask {
+  private final int[][] mask; // the mask, as returned by createMask()
+  private final int[] dx; // column offsets of the white cells
+  private final int[] dy; // row offsets of the white cells
+  private final long[] bits; // packed rows, or null if wider than 64 cells
+
+  /**
+   * Creates a ring mask from a square mask of black (0) and white (255) cells.
+   *
+   * @param mask the mask created by SpotDetection.createMask()
+   */
+  public RingMask(int[][] mask) {
+    int width = mask.length;
+    int whiteCount = 0;
+    for (int i = 0; i < width; ++i) {
+      for (int j = 0; j < width; ++j) {
+        if (mask[i][j] == 255) {
+          whiteCount++;
+        }
+      }
+    }
+    this.mask = new int[width][];
+    for (int i = 0; i < width; ++i) {
+      this.mask[i] = mask[i].clone();
+    }
+    this.dx = new int[whiteCount];
+    this.dy = new int[whiteCount];
+    this.bits = width <= 64 ? new long[width] : null;
+    int k = 0;
+    // row by row, so that the offsets visit the picture in memory order
+    for (int j = 0; j < width; ++j) {
+      for (int i = 0; i < width; ++i) {
+        if (mask[i][j] == 255) {
+          dx[k] = i;
+          dy[k] = j;
+          k++;
+          if (bits != null) {
+            bits[j] |= 1L << i;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the width (and height) of the mask.
+   *
+   * @return the width of the mask
+   */
+  public int width() {
+    return mask.length;
+  }
+
+  /**
+   * Returns the number of white cells in the mask.
+   *
+   * @return the number of white cells
+   */
+  public int whiteCount() {
+    return dx.length;
+  }
+
+  /**
+   * Returns the column offset of the k'th white cell.
+   *
+   * @param k the index of the white cell
+   * @return the column of the cell in the mask
+   */
+  public int dx(int k) {
+    return dx[k];
+  }
+
+  /**
+   * Returns the row offset of the k'th white cell.
+   *
+   * @param k the index of the white cell
+   * @return the row of the cell in the mask
+   */
+  public int dy(int k) {
+    return dy[k];
+  }
+
+  /**
+   * Returns row j of the mask packed into a long, so that bit i is set if cell
+   * (i, j) is white.
+   *
+   * @param j the row of the mask
+   * @return the packed row
+   * @throws IllegalStateException if the mask is wider than 64 cells
+   */
+  public long bits(int j) {
+    if (bits == null) {
+      throw new IllegalStateException("mask is wider than 64 cells");
+    }
+    return bits[j];
+  }
+
+  /**
+   * Returns the value of cell (i, j) of the mask.
+   *
+   * @param i the column of the cell
+   * @param j the row of the cell
+   * @return 255 if the cell is white, or 0 if it is black
+   */
+  public int get(int i, int j) {
+    return mask[i][j];
+  }
+
+  /**
+   * Returns a copy of the mask as a 2D array of black and white cells.
+   *
+   * @return the 2D array representation of the mask
+   */
+  public int[][] toArray() {
+    int[][] copy = new int[mask.length][];
+    for (int i = 0; i < mask.length; ++i) {
+      copy[i] = mask[i].clone();
+    }
+    return copy;
+  }
+
+  /**
+   * Unit tests the RingMask class by printing the white cells of the mask with
+   * the given radius, donut radius, width and delta.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    RingMask mask = new RingMask(SpotDetection.createMask(
+        Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+        Integer.parseInt(args[2]), Integer.parseInt(args[3])));
+    StdOut.println(mask.whiteCount() + " white cells");
+    for (int k = 0; k < mask.whiteCount(); ++k) {
+      StdOut.printf("(%d, %d) ", mask.dx(k), mask.dy(k));
+    }
+    StdOut.println();
+  }
+
+}
@@ -0,0 +1,71 @@
+/**
+ * The ScalarKernels class runs the pixel-wise stages with the plain Java loops
+ * of GreyScale, NoiseReduction and EdgeDetection, which the JIT compiler may
+ * vectorise by itself. It works on every Java runtime, and is the reference
+ * which the other PixelKernels are checked against.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class ScalarKernels implements PixelKernels {
+
+  /**
+   * Grey-scales a row with GreyScale.greyRow().
+   *
+   * @param rgb the packed RGB values
+   * @param sums a scratch array at least length long
+   * @param out the array where the grey values are written
+   * @param outIndex the index in out of the first grey value
+   * @param length the number of pixels
+   */
+  @Override
+  public void greyRow(int[] rgb, int[] sums, byte[] out, int outIndex,
+      int length) {
+    GreyScale.greyRow(rgb, sums, out, outIndex, length);
+  }
+
+  /**
+   * Applies noise reduction to a run with NoiseReduction.reduceRun().
+   *
+   * @param data the grey values of the picture
+   * @param index the index in data of the first pixel in the run
+   * @param stride the distance in data between two rows
+   * @param out the array where the reduced pixels are written
+   * @param outIndex the index in out of the first pixel in the run
+   * @param length the number of pixels in the run
+   */
+  @Override
+  public void reduceRun(byte[] data, int index, int stride, byte[] out,
+      int outIndex, int length) {
+    NoiseReduction.reduceRun(data, index, stride, out, outIndex, length);
+  }
+
+  /**
+   * Detects the edges in a run with EdgeDetection.detectRun().
+   *
+   * @param data the grey values of the picture
+   * @param index the index in data of the first pixel in the run
+   * @param stride the distance in data between two rows
+   * @param out the array where the edges (0 or 255) are written
+   * @param outIndex the index in out of the first pixel in the run
+   * @param length the number of pixels in the run
+   * @param epsilon the threshold value
+   */
+  @Override
+  public void detectRun(byte[] data, int index, int stride, byte[] out,
+      int outIndex, int length, int epsilon) {
+    EdgeDetection.detectRun(data, index, stride, out, outIndex, length,
+        epsilon);
+  }
+
+  /**
+   * Returns the name of the kernels.
+   *
+   * @return "scalar"
+   */
+  @Override
+  public String name() {
+    return "scalar";
+  }
+
+}
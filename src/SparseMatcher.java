@@ -0,0 +1,102 @@
+/**
+ * The SparseMatcher class finds the same spots as SpotDetection.findSpots()
+ * without copying the block covered by the mask. Since the picture of edges
+ * and the mask only contain black (0) and white (255) pixels, the sum of
+ * differences between a block and a mask is
+ * 255 * (whiteCount(block) + whiteCount(mask) - 2 * overlap), where overlap is
+ * the number of white cells of the mask which cover white pixels. The overlap
+ * only has to be checked at the white cells of the mask, and the sum can stop
+ * being computed as soon as it can no longer be less than the threshold.
+ * <p>
+ * The number of white pixels in each block is looked up in a summed-area
+ * table which is built once for the picture. Since the sum of differences is
+ * at least 255 * |whiteCount(block) - whiteCount(mask)|, blocks which are
+ * empty or have far too few or too many white pixels are skipped without
+ * reading the picture at all. Most of a picture of a cheetah is background,
+ * so the overlap only has to be found for a few blocks.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class SparseMatcher implements SpotMatcher {
+  private final GreyRaster edges; // the picture of edges
+  private final SummedAreaTable whitePixels; // counts white pixels in blocks
+
+  /**
+   * Creates a matcher for the given picture of edges.
+   *
+   * @param edges the raster of edges, containing only 0 and 255
+   */
+  public SparseMatcher(GreyRaster edges) {
+    this(edges, new SummedAreaTable(edges));
+  }
+
+  /**
+   * Creates a matcher for the given picture of edges which shares the given
+   * summed-area table of it.
+   *
+   * @param edges the raster of edges, containing only 0 and 255
+   * @param whitePixels the summed-area table of the raster of edges
+   */
+  public SparseMatcher(GreyRaster edges, SummedAreaTable whitePixels) {
+    this.edges = edges;
+    this.whitePixels = whitePixels;
+  }
+
+  /**
+   * Computes the sum of differences between the mask and the block it covers,
+   * given the number of white pixels in the block. If the sum reaches diff the
+   * computation stops early and the partial sum (which is at least diff) is
+   * returned.
+   *
+   * @param mask the spot mask
+   * @param col the column of the top left pixel covered by the mask
+   * @param row the row of the top left pixel covered by the mask
+   * @param blockCount the number of white pixels in the block
+   * @param diff the maximum sum of differences for a spot
+   * @return the sum of differences, or a number of at least diff
+   */
+  public int sumOfDifferences(RingMask mask, int col, int row, int blockCount,
+      int diff) {
+    byte[] data = edges.data();
+    int stride = edges.stride();
+    int base = edges.index(col, row);
+    // sum = 255 * (blockCount - maskCount + 2 * misses), where misses are the
+    // white cells of the mask which cover black pixels
+    int sum = 255 * (blockCount - mask.whiteCount());
+    for (int k = 0; k < mask.whiteCount(); ++k) {
+      if (data[base + mask.dy(k) * stride + mask.dx(k)] == 0) {
+        sum += 2 * 255;
+        if (sum >= diff) {
+          return sum;
+        }
+      }
+    }
+    return sum;
+  }
+
+  @Override
+  public boolean matches(RingMask mask, int col, int row, int diff) {
+    if (!whitePixels.mayMatch(mask, col, row, diff)) {
+      return false; // empty, or too few or too many white pixels to be a spot
+    }
+    int width = mask.width();
+    int blockCount = whitePixels.count(col, row, width, width);
+    return sumOfDifferences(mask, col, row, blockCount, diff) < diff;
+  }
+
+  /**
+   * Unit tests the SparseMatcher class by counting the spots in the given
+   * picture of edges with both the original and the sparse matcher.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster edges = GreyRaster.fromPicture(new Picture(args[0]));
+    int r1 = Integer.parseInt(args[1]);
+    int r2 = Integer.parseInt(args[2]);
+    SpotDetection.detectSpots(edges, r1, r2, new BlockMatcher(edges));
+    SpotDetection.detectSpots(edges, r1, r2, new SparseMatcher(edges));
+  }
+
+}
@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 /**
  * The SpotDetection class implements methods to count the number of spots on a
  * picture of a cheetah. It does this by creating small images of spots, called
@@ -60,17 +62,18 @@ public class SpotDetection {
   /**
    * Gets the block of pixels covered by the mask.
    * 
-   * @param edges the 2D array representation of the picture of edges
+   * @param edges the raster of edges
    * @param width the width of the block
    * @param col the column of the bottom left pixel in the block
    * @param row the row of the bottom left pixel in the block
    * @return the block of pixels covered by the mask
    */
-  public static int[][] getBlock(int[][] edges, int width, int col, int row) {
+  public static int[][] getBlock(GreyRaster edges, int width, int col,
+      int row) {
     int[][] block = new int[width][width];
     for (int i = 0; i < width; ++i) {
       for (int j = 0; j < width; ++j) {
-        block[i][j] = edges[col + i][row + j];
+        block[i][j] = edges.get(col + i, row + j);
       }
     }
     return block;
@@ -133,51 +136,45 @@ public class SpotDetection {
   }
 
   /**
-   * TODO this works well. Use boolean array to remember which spots have been
-   * counted. Try make it use the width of the image block or radius
-   * 
-   * @param counted the 2D array which stores the centers of spots which have
-   *        been counted
-   * @param spotCounter the spot mask of the center of the spot
-   * @param width the width of the spot mask
-   * @param row the row of the top left pixel covered by the mask
-   * @param col the column of the top left pixel covered by the mask
-   * @return true if the spot hasn't been counted before, else false
-   */
-  public static boolean countSpot(boolean[][] counted, int[][] spotCounter,
-      int width, int row, int col) {
-    boolean isSpot = false;
-    for (int i = 0; i < width; ++i) {
-      for (int j = 0; j < width; ++j) {
-        if (spotCounter[i][j] == 255) {
-          int nx = row + i;
-          int ny = col + j;
-          isSpot |= counted[nx][ny];
-          counted[nx][ny] = true;
-        }
-      }
-    }
-    return isSpot;
-  }
-
-  /**
-   * Changes the colors of pixels stored in a 2D array which are covered by the
+   * Changes the colors of pixels stored in a raster which are covered by the
    * image block from 'color' to 'set'
    * 
-   * @param arr the 2D array of pixel colors
+   * @param arr the raster of pixel colors
    * @param block the image block
    * @param col the row of the top left pixel
    * @param row the column of the top left pixel
    * @param colour the color which should be changed
    * @param set the color to change to
    */
-  public static void setInts(int[][] arr, int[][] block, int col, int row,
+  public static void setInts(GreyRaster arr, int[][] block, int col, int row,
       int colour, int set) {
     int width = block.length;
     for (int i = 0; i < width; ++i) {
       for (int j = 0; j < width; ++j) {
         if (block[i][j] == colour) {
-          arr[col + i][row + j] = set;
+          arr.set(col + i, row + j, set);
+        }
+      }
+    }
+  }
+
+  /**
+   * Copies the white pixels in a block of the picture of edges to the picture
+   * of spots. This does the same as setInts(spots, block, col, row, 255, 255)
+   * without having to copy the block first.
+   * 
+   * @param edges the raster of edges
+   * @param spots the raster of spots
+   * @param width the width of the block
+   * @param col the column of the top left pixel of the block
+   * @param row the row of the top left pixel of the block
+   */
+  public static void paintBlock(GreyRaster edges, GreyRaster spots, int width,
+      int col, int row) {
+    for (int j = row; j < row + width; ++j) {
+      for (int i = col; i < col + width; ++i) {
+        if (edges.get(i, j) == 255) {
+          spots.set(i, j, 255);
         }
       }
     }
@@ -187,35 +184,60 @@ public class SpotDetection {
    * Counts the number of spots in a picture of edges and adds them to a new
    * picture using the mask given as an argument.
    * 
-   * @param edges the 2D array representing the picture of edges
-   * @param spots the 2D array representing the image of spots
-   * @param counted the 2D array used to avoid recounting spots
+   * @param matcher the matcher which checks if image blocks contain spots
+   * @param edges the raster of edges
+   * @param spots the raster of spots
+   * @param registry the spots counted so far, used to avoid recounting spots
    * @param mask the mask which should be used to check if image blocks contain
    *        spots
-   * @param spotCounter the
+   * @param spotCounter the mask of the center of the spot, which is stored in
+   *        the registry
    * @param diff the maximum difference between pixel values in the spot mask
    *        and the pixels which it covers in edges for a spot
    * @return the number of spots counted with the spot mask
    */
-  public static int findSpots(int[][] edges, int[][] spots, boolean[][] counted,
-      int[][] mask, int[][] spotCounter, int diff) {
+  public static int findSpots(SpotMatcher matcher, GreyRaster edges,
+      GreyRaster spots, SpotRegistry registry, RingMask mask,
+      RingMask spotCounter, int diff) {
+    return findSpots(matcher, new SummedAreaTable(edges), edges, spots,
+        registry, mask, spotCounter, diff);
+  }
+
+  /**
+   * Counts the number of spots in a picture of edges and adds them to a new
+   * picture using the mask given as an argument. Each block is first checked
+   * with the summed-area table of the edges, so the matcher is only asked
+   * about blocks with about as many white pixels as the mask, whatever
+   * matcher it is.
+   * 
+   * @param matcher the matcher which checks if image blocks contain spots
+   * @param whitePixels the summed-area table of the raster of edges
+   * @param edges the raster of edges
+   * @param spots the raster of spots
+   * @param registry the spots counted so far, used to avoid recounting spots
+   * @param mask the mask which should be used to check if image blocks contain
+   *        spots
+   * @param spotCounter the mask of the center of the spot, which is stored in
+   *        the registry
+   * @param diff the maximum difference between pixel values in the spot mask
+   *        and the pixels which it covers in edges for a spot
+   * @return the number of spots counted with the spot mask
+   */
+  public static int findSpots(SpotMatcher matcher,
+      SummedAreaTable whitePixels, GreyRaster edges, GreyRaster spots,
+      SpotRegistry registry, RingMask mask, RingMask spotCounter, int diff) {
     int counter = 0;
-    int picWidth = edges.length;
-    int picHeight = edges[0].length;
-    int maskWidth = mask.length; // only width because its a square
+    int picWidth = edges.width();
+    int picHeight = edges.height();
+    int maskWidth = mask.width(); // only width because its a square
+    matcher.prepare(mask);
     for (int i = 0; i < picWidth - maskWidth; ++i) {
       for (int j = 0; j < picHeight - maskWidth; ++j) {
-        int[][] imageBlock = getBlock(edges, maskWidth, i, j);
-        int max = getMax(imageBlock, maskWidth);
-        if (max == 0) {
-          continue; // continue because every pixel in image block is black
-        }
-        // normalise(imageBlock, maskWidth, max); // TODO is this necessary?
-        int sum = sumOfDifferences(imageBlock, mask, maskWidth);
-        if (sum < diff) {
+        if (whitePixels.mayMatch(mask, i, j, diff)
+            && matcher.matches(mask, i, j, diff)) {
           // if pixel in image block is white, make it white in spots
-          setInts(spots, imageBlock, i, j, 255, 255);
-          if (!countSpot(counted, spotCounter, maskWidth, i, j)) {
+          paintBlock(edges, spots, maskWidth, i, j);
+          if (!registry.countSpot(spotCounter, i, j)) {
             counter++;
           }
         }
@@ -225,39 +247,159 @@ public class SpotDetection {
   }
 
   /**
-   * Creates and returns a new picture of spots found in the given picture of
-   * edges.
+   * Paints and counts spots which have already been found, in the order given.
+   * This does the same as the body of the loop in findSpots(), so if the
+   * positions are given in the order findSpots() visits them (by column, then
+   * by row) the same spots are counted no matter how they were found.
    * 
-   * @param pic the picture containing edges
+   * @param edges the raster of edges
+   * @param spots the raster of spots
+   * @param registry the spots counted so far, used to avoid recounting spots
+   * @param spotCounter the mask of the center of the spot, which is stored in
+   *        the registry
+   * @param matches the positions of the top left pixels of the matching blocks,
+   *        each stored as (col &lt;&lt; 32) | row
+   * @return the number of new spots counted
+   */
+  public static int countMatches(GreyRaster edges, GreyRaster spots,
+      SpotRegistry registry, RingMask spotCounter, long[] matches) {
+    int counter = 0;
+    for (long match : matches) {
+      int i = (int) (match >>> 32);
+      int j = (int) match;
+      paintBlock(edges, spots, spotCounter.width(), i, j);
+      if (!registry.countSpot(spotCounter, i, j)) {
+        counter++;
+      }
+    }
+    return counter;
+  }
+
+  /**
+   * Creates and returns a new raster of spots found in the given raster of
+   * edges, using a DefaultMatcher to compare the masks with the edges and
+   * an OccupancyQuadtree to skip the parts of the picture where no spot can
+   * be. Both share one summed-area table of the edges.
+   * 
+   * @param edges the raster containing edges
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2) {
+    SummedAreaTable whitePixels = new SummedAreaTable(edges);
+    return detectSpots(edges, r1, r2, new DefaultMatcher(edges, whitePixels),
+        new OccupancyQuadtree(edges, whitePixels));
+  }
+
+  /**
+   * Creates and returns a new raster of spots found in the given raster of
+   * edges, using the given matcher to compare the masks with the edges.
+   * 
+   * @param edges the raster containing edges
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @param matcher the matcher for the raster of edges
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2,
+      SpotMatcher matcher) {
+    return detectSpots(edges, r1, r2, matcher, MaskBank.DEFAULT);
+  }
+
+  /**
+   * Creates and returns a new raster of spots found in the given raster of
+   * edges, using the given matcher and the masks in the given bank.
+   * 
+   * @param edges the raster containing edges
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @param matcher the matcher for the raster of edges
+   * @param bank the masks and thresholds for each radius
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2,
+      SpotMatcher matcher, MaskBank bank) {
+    return detectSpots(edges, r1, r2, matcher, bank, new SpotRegistry());
+  }
+
+  /**
+   * Creates and returns a new raster of spots found in the given raster of
+   * edges, and stores the centers of the spots in the registry.
+   * 
+   * @param edges the raster containing edges
    * @param r1 the minimum radius for the spot masks
    * @param r2 the maximum radius for the spot masks
-   * @return the new picture of spots found in the input picture
+   * @param matcher the matcher for the raster of edges
+   * @param bank the masks and thresholds for each radius
+   * @param registry where the spots which are found are stored
+   * @return the new raster of spots found in the input raster
    */
-  public static Picture detectSpots(Picture pic, int r1, int r2) {
-    int[][] edges = Utility.getArrFromPic(pic);
-    int[][] spots = new int[pic.width()][pic.height()];
-    boolean[][] counted = new boolean[pic.width()][pic.height()];
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2,
+      SpotMatcher matcher, MaskBank bank, SpotRegistry registry) {
+    GreyRaster spots = new GreyRaster(edges.width(), edges.height());
+    SummedAreaTable whitePixels = new SummedAreaTable(edges);
     int counter = 0;
-    int[] width = {6, 9, 12, 15, 18, 21, 24, 27};
-    int[] delta = {0, 1, 1, 1, 1, 1, 2, 2};
-    int[] difference = {4800, 6625, 11000, 15000, 19000, 23000, 28000, 35000};
     for (int i = 0; i <= r2 - r1; ++i) {
-      int[][] mask = createMask(r1 + i, r1 + i, width[i], delta[i]);
-      int[][] spotCounter =
-          createMask(r1 + i, (r1 + i) / 2, width[i], delta[i]);
-      counter +=
-          findSpots(edges, spots, counted, mask, spotCounter, difference[i]);
+      counter += findSpots(matcher, whitePixels, edges, spots, registry,
+          bank.mask(r1, i), bank.spotCounter(r1, i), bank.difference(i));
     }
     StdOut.println(counter);
-    return Utility.getPicFromArr(spots);
+    return spots;
   }
 
   /**
-   * Unit tests the methods in SpotDetection.
+   * Creates and returns a new raster of spots found in the given raster of
+   * edges, only checking the parts of the picture where the quadtree shows a
+   * spot could be. The same spots are counted as by the other detectSpots()
+   * methods.
+   *
+   * @param edges the raster containing edges
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @param matcher the matcher for the raster of edges
+   * @param occupancy the quadtree of white pixels in the raster of edges
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2,
+      SpotMatcher matcher, OccupancyQuadtree occupancy) {
+    GreyRaster spots = new GreyRaster(edges.width(), edges.height());
+    SpotRegistry registry = new SpotRegistry();
+    MaskBank bank = MaskBank.DEFAULT;
+    int counter = 0;
+    for (int i = 0; i <= r2 - r1; ++i) {
+      long[] matches = occupancy.findMatches(matcher, bank.mask(r1, i),
+          bank.difference(i));
+      counter += countMatches(edges, spots, registry, bank.spotCounter(r1, i),
+          matches);
+    }
+    StdOut.println(counter);
+    return spots;
+  }
+
+  /**
+   * Unit tests the methods in SpotDetection. Also paints spot masks of radius
+   * 30 up to 35 (wider than 64 cells from radius 32) onto a picture and
+   * checks that detectSpots() and MultiRadiusSweep find the same spots as
+   * the original BlockMatcher.
    * 
    * @param args the command line arguments
    */
   public static void main(String[] args) {
+    GreyRaster edges = new GreyRaster(480, 100);
+    for (int i = 0; i < 6; ++i) {
+      RingMask mask = MaskBank.DEFAULT.mask(30, i);
+      for (int k = 0; k < mask.whiteCount(); ++k) {
+        edges.set(5 + 78 * i + mask.dx(k), 10 + mask.dy(k), 255);
+      }
+    }
+    GreyRaster expected = detectSpots(edges, 30, 35, new BlockMatcher(edges));
+    boolean same = Arrays.equals(expected.data(),
+        detectSpots(edges, 30, 35).data())
+        && Arrays.equals(expected.data(),
+            MultiRadiusSweep.detectSpots(edges, 30, 35).data());
+    StdOut.println("radii 30 to 35 same as BlockMatcher: " + same);
+
     int[] radius = {4, 5, 6, 7, 8, 9, 10, 11};
     int[] width = {6, 9, 12, 15, 18, 21, 24, 27};
     int[] delta = {0, 1, 1, 1, 1, 1, 2, 2};
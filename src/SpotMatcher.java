@@ -0,0 +1,36 @@
+/**
+ * A SpotMatcher decides whether the block of a picture of edges covered by a
+ * spot mask is similar enough to the mask to be counted as a spot.
+ * SpotDetection moves the mask over the picture and asks the matcher about
+ * every position, so each matcher is created for a single picture of edges
+ * and can prepare whatever it needs from it up front. Once prepare() has been
+ * called for a mask, matches() may be called for that mask from several
+ * threads at once.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public interface SpotMatcher {
+
+  /**
+   * Called before a mask is moved over the picture, so that a matcher which
+   * works on the whole picture at once can do so. Does nothing by default.
+   *
+   * @param mask the spot mask which is about to be used
+   */
+  default void prepare(RingMask mask) {}
+
+  /**
+   * Checks whether the block with top left pixel (col, row) matches the mask.
+   * A block matches if it contains at least one white pixel and the sum of
+   * differences between it and the mask is less than diff.
+   *
+   * @param mask the spot mask
+   * @param col the column of the top left pixel covered by the mask
+   * @param row the row of the top left pixel covered by the mask
+   * @param diff the maximum sum of differences for a spot
+   * @return true if the block contains a spot, else false
+   */
+  boolean matches(RingMask mask, int col, int row, int diff);
+
+}
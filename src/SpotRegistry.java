@@ -0,0 +1,236 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The SpotRegistry class remembers where spots have been found, so that the
+ * same spot isn't counted twice. It replaces the boolean[][] grid which
+ * SpotDetection used to mark the center of each spot in. Rather than marking
+ * every white cell of the spotCounter mask of each match, it keeps the
+ * position and mask of each match in square cells of CELL by CELL pixels, as
+ * HoughSpotDetection keeps its spots, and only the cells which contain a
+ * match are stored, in a hash map.
+ * <p>
+ * A new match is part of an old spot if its spotCounter mask shares a white
+ * pixel with the mask of an earlier match, which is what marking the grid
+ * checked, so the registry counts the same spots as the grid does. Two masks
+ * can only share a pixel if their top left corners are less than a mask
+ * width apart, so only the cells that close to the new match are searched.
+ * Whether two masks at a given offset share a pixel is looked up in a table
+ * built the first time the two masks meet. Each match therefore costs one
+ * lookup per earlier match near it rather than one per white cell of its
+ * mask. It also keeps a list of the centers and radii of the spots.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class SpotRegistry {
+  private static final int CELL = 32; // the width of the cells of matches
+
+  // the matches as {col, row, mask, width}, by the cell of their top left corner
+  private final HashMap<Long, List<int[]>> cells = new HashMap<>();
+  private final List<RingMask> masks = new ArrayList<>(); // by number
+  private boolean[][][] overlaps = new boolean[0][][]; // by mask numbers
+  private final List<int[]> spots = new ArrayList<>(); // col, row, radius
+  private int widest; // the width of the widest mask so far
+
+  /**
+   * Packs the column and row of a cell into one key.
+   *
+   * @param cellCol the column of the cell
+   * @param cellRow the row of the cell
+   * @return the key of the cell
+   */
+  private static long key(int cellCol, int cellRow) {
+    return ((long) cellCol << 32) | (cellRow & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Returns the number of a mask, giving it the next number if it hasn't
+   * been seen before. The masks of a MaskBank are made once, so the same
+   * mask object comes back for each radius.
+   *
+   * @param mask the spotCounter mask
+   * @return the number of the mask
+   */
+  private int number(RingMask mask) {
+    for (int m = 0; m < masks.size(); ++m) { // a few masks, one per radius
+      if (masks.get(m) == mask) {
+        return m;
+      }
+    }
+    masks.add(mask);
+    widest = Math.max(widest, mask.width());
+    int count = masks.size();
+    overlaps = Arrays.copyOf(overlaps, count);
+    for (int m = 0; m < count; ++m) {
+      overlaps[m] = overlaps[m] == null ? new boolean[count][]
+          : Arrays.copyOf(overlaps[m], count);
+    }
+    return count - 1;
+  }
+
+  /**
+   * Returns the offsets at which a mask b shares a white pixel with a mask a,
+   * building them if they haven't been built yet. The offset (dx, dy) of the
+   * top left corner of b from the top left corner of a is at index (dy +
+   * b.width() - 1) * (a.width() + b.width() - 1) + dx + b.width() - 1.
+   *
+   * @param a the number of the first mask
+   * @param b the number of the second mask
+   * @return true at each offset where the masks share a pixel
+   */
+  private boolean[] overlap(int a, int b) {
+    if (overlaps[a][b] == null) {
+      RingMask maskA = masks.get(a);
+      RingMask maskB = masks.get(b);
+      int span = maskA.width() + maskB.width() - 1;
+      boolean[] table = new boolean[span * span];
+      for (int p = 0; p < maskA.whiteCount(); ++p) {
+        for (int q = 0; q < maskB.whiteCount(); ++q) {
+          int dx = maskA.dx(p) - maskB.dx(q) + maskB.width() - 1;
+          int dy = maskA.dy(p) - maskB.dy(q) + maskB.width() - 1;
+          table[dy * span + dx] = true;
+        }
+      }
+      overlaps[a][b] = table;
+    }
+    return overlaps[a][b];
+  }
+
+  /**
+   * Records a match and checks whether it is part of a spot which has already
+   * been counted, which it is if its mask shares a white pixel with the mask
+   * of an earlier match.
+   *
+   * @param spotCounter the mask of the center of the spot
+   * @param col the column of the top left pixel covered by the mask
+   * @param row the row of the top left pixel covered by the mask
+   * @return true if the spot has been counted before, else false
+   */
+  public boolean countSpot(RingMask spotCounter, int col, int row) {
+    int mask = number(spotCounter);
+    int width = spotCounter.width();
+    boolean isSpot = false;
+    // an earlier match at (c, r) of width w is close enough if
+    // col - w < c < col + width, and the same for the rows
+    for (int cellRow = Math.floorDiv(row - widest + 1, CELL);
+        !isSpot && cellRow <= Math.floorDiv(row + width - 1, CELL);
+        ++cellRow) {
+      for (int cellCol = Math.floorDiv(col - widest + 1, CELL);
+          !isSpot && cellCol <= Math.floorDiv(col + width - 1, CELL);
+          ++cellCol) {
+        List<int[]> matches = cells.get(key(cellCol, cellRow));
+        if (matches != null) {
+          isSpot = overlapsAny(matches, mask, width, col, row);
+        }
+      }
+    }
+    cells.computeIfAbsent(key(Math.floorDiv(col, CELL),
+        Math.floorDiv(row, CELL)), k -> new ArrayList<>())
+        .add(new int[] {col, row, mask, width});
+    if (!isSpot) {
+      int radius = width / 2;
+      spots.add(new int[] {col + radius, row + radius, radius});
+    }
+    return isSpot;
+  }
+
+  /**
+   * Checks whether a mask shares a white pixel with the mask of any of the
+   * given matches.
+   *
+   * @param matches the earlier matches in one cell, as {col, row, mask,
+   *        width}
+   * @param mask the number of the mask of the new match
+   * @param width the width of the mask of the new match
+   * @param col the column of the top left pixel of the new match
+   * @param row the row of the top left pixel of the new match
+   * @return true if the masks share a pixel, else false
+   */
+  private boolean overlapsAny(List<int[]> matches, int mask, int width,
+      int col, int row) {
+    for (int[] match : matches) {
+      int other = match[3];
+      int dx = match[0] - col + other - 1;
+      int dy = match[1] - row + other - 1;
+      int span = width + other - 1;
+      if (dx >= 0 && dy >= 0 && dx < span && dy < span
+          && overlap(mask, match[2])[dy * span + dx]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Records a spot found without using spot masks, for example by
+   * ComponentSpotDetection. It isn't checked for overlaps.
+   *
+   * @param col the column of the center of the spot
+   * @param row the row of the center of the spot
+   * @param radius the radius of the spot
+   */
+  public void addSpot(int col, int row, int radius) {
+    spots.add(new int[] {col, row, radius});
+  }
+
+  /**
+   * Returns the number of spots which have been counted.
+   *
+   * @return the number of spots
+   */
+  public int size() {
+    return spots.size();
+  }
+
+  /**
+   * Returns the column of the center of the k'th spot counted.
+   *
+   * @param k the index of the spot
+   * @return the column of the center
+   */
+  public int col(int k) {
+    return spots.get(k)[0];
+  }
+
+  /**
+   * Returns the row of the center of the k'th spot counted.
+   *
+   * @param k the index of the spot
+   * @return the row of the center
+   */
+  public int row(int k) {
+    return spots.get(k)[1];
+  }
+
+  /**
+   * Returns the radius of the k'th spot counted.
+   *
+   * @param k the index of the spot
+   * @return the radius of the spot
+   */
+  public int radius(int k) {
+    return spots.get(k)[2];
+  }
+
+  /**
+   * Unit tests the SpotRegistry class by finding the spots in the given
+   * picture of edges and printing their centers and radii.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster edges = GreyRaster.fromPicture(new Picture(args[0]));
+    SpotRegistry registry = new SpotRegistry();
+    SpotDetection.detectSpots(edges, Integer.parseInt(args[1]),
+        Integer.parseInt(args[2]), new BitMatcher(edges), MaskBank.DEFAULT,
+        registry);
+    for (int k = 0; k < registry.size(); ++k) {
+      StdOut.printf("(%d, %d) r=%d\n", registry.col(k), registry.row(k),
+          registry.radius(k));
+    }
+  }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * The SummedAreaTable class stores the number of white pixels above and to the
+ * left of every pixel in a picture of edges (an integral image). Once it has
+ * been built, the number of white pixels in any rectangular block can be found
+ * with four lookups, no matter how big the block is.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class SummedAreaTable {
+  private final int[] sums; // sums[row * (width + 1) + col] for the corner
+  private final int width; // number of columns in the picture
+
+  /**
+   * Builds the table for the given picture of edges. Any pixel which isn't
+   * black is counted as white.
+   *
+   * @param edges the raster of edges
+   */
+  public SummedAreaTable(GreyRaster edges) {
+    width = edges.width();
+    int height = edges.height();
+    byte[] data = edges.data();
+    sums = new int[(width + 1) * (height + 1)]; // first row and column are 0
+    for (int j = 0; j < height; ++j) {
+      int rowSum = 0;
+      int start = edges.index(0, j);
+      int above = j * (width + 1);
+      int current = above + width + 1;
+      for (int i = 0; i < width; ++i) {
+        if (data[start + i] != 0) {
+          rowSum++;
+        }
+        sums[current + i + 1] = sums[above + i + 1] + rowSum;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of white pixels in a block.
+   *
+   * @param col the column of the top left pixel of the block
+   * @param row the row of the top left pixel of the block
+   * @param w the width of the block
+   * @param h the height of the block
+   * @return the number of white pixels in the block
+   */
+  public int count(int col, int row, int w, int h) {
+    int top = row * (width + 1);
+    int bottom = (row + h) * (width + 1);
+    return sums[bottom + col + w] - sums[bottom + col] - sums[top + col + w]
+        + sums[top + col];
+  }
+
+  /**
+   * Checks whether the block covered by a mask could match it, from the
+   * number of white pixels in the block alone. A matching block has at least
+   * one white pixel, and its sum of differences with the mask is at least
+   * 255 * |whiteCount(block) - whiteCount(mask)|, so blocks which are empty
+   * or have far too few or too many white pixels can't match with any
+   * matcher.
+   *
+   * @param mask the spot mask
+   * @param col the column of the top left pixel covered by the mask
+   * @param row the row of the top left pixel covered by the mask
+   * @param diff the maximum sum of differences for a spot
+   * @return false if the block can't match, true if it might
+   */
+  public boolean mayMatch(RingMask mask, int col, int row, int diff) {
+    int blockCount = count(col, row, mask.width(), mask.width());
+    return blockCount != 0
+        && 255L * Math.abs(blockCount - mask.whiteCount()) < diff;
+  }
+
+  /**
+   * Unit tests the SummedAreaTable class by printing the number of white
+   * pixels in the given picture of edges.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster edges = GreyRaster.fromPicture(new Picture(args[0]));
+    SummedAreaTable table = new SummedAreaTable(edges);
+    StdOut.println(table.count(0, 0, edges.width(), edges.height()));
+  }
+
+}
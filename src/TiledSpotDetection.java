@@ -0,0 +1,226 @@
+import java.util.Arrays;
+
+/**
+ * The TiledSpotDetection class counts spots in the same way as SpotDetection,
+ * but moves over the picture of edges one tile at a time. SpotDetection moves
+ * each mask down every column of the whole picture before moving on to the
+ * next mask, so the pixels under the mask have usually left the cache by the
+ * time the next column or mask needs them. Here the positions are split into
+ * square tiles, and every mask from r1 to r2 is moved over a tile before the
+ * next tile is started. A tile and the halo of pixels below and to the right
+ * of it that the largest mask reaches are small enough to stay in the cache
+ * while all of the masks are used.
+ * <p>
+ * The matches for each radius are sorted into the order findSpots() would
+ * find them, and are counted radius by radius afterwards, so the spots which
+ * are counted are the same as those counted by SpotDetection.detectSpots().
+ * Each block is first checked with a summed-area table of the edges, as in
+ * findSpots(). The matcher is prepared for every mask in every tile, so this
+ * suits matchers with a cheap prepare() (such as DefaultMatcher, BlockMatcher,
+ * SparseMatcher and BitMatcher) rather than FftMatcher.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class TiledSpotDetection {
+  /** The default width of a tile, in positions of the masks. */
+  public static final int TILE = 256;
+
+  /**
+   * Finds the positions where each mask matches, tile by tile.
+   *
+   * @param matcher the matcher for the raster of edges
+   * @param whitePixels the summed-area table of the raster of edges
+   * @param edges the raster of edges
+   * @param bank the masks and thresholds for each radius
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @param tile the width of a tile
+   * @return the matching positions of radius r1 + i in element i, each stored
+   *         as (col &lt;&lt; 32) | row, in the order findSpots() visits them
+   */
+  public static long[][] findMatches(SpotMatcher matcher,
+      SummedAreaTable whitePixels, GreyRaster edges, MaskBank bank, int r1,
+      int r2, int tile) {
+    if (tile < 1) {
+      throw new IllegalArgumentException("tile must be at least 1");
+    }
+    int radii = r2 - r1 + 1;
+    RingMask[] masks = new RingMask[radii];
+    for (int r = 0; r < radii; ++r) {
+      masks[r] = bank.mask(r1, r);
+    }
+    long[][] matches = new long[radii][16];
+    int[] counts = new int[radii];
+    for (int tileCol = 0; tileCol < edges.width(); tileCol += tile) {
+      for (int tileRow = 0; tileRow < edges.height(); tileRow += tile) {
+        for (int r = 0; r < radii; ++r) { // every mask before the next tile
+          RingMask mask = masks[r];
+          int diff = bank.difference(r);
+          int toCol = Math.min(tileCol + tile, edges.width() - mask.width());
+          int toRow = Math.min(tileRow + tile, edges.height() - mask.width());
+          matcher.prepare(mask);
+          for (int i = tileCol; i < toCol; ++i) {
+            for (int j = tileRow; j < toRow; ++j) {
+              if (whitePixels.mayMatch(mask, i, j, diff)
+                  && matcher.matches(mask, i, j, diff)) {
+                if (counts[r] == matches[r].length) {
+                  matches[r] = Arrays.copyOf(matches[r], 2 * counts[r]);
+                }
+                matches[r][counts[r]++] = ((long) i << 32) | j;
+              }
+            }
+          }
+        }
+      }
+    }
+    for (int r = 0; r < radii; ++r) {
+      matches[r] = Arrays.copyOf(matches[r], counts[r]);
+      Arrays.sort(matches[r]); // by column, then by row, as in findSpots()
+    }
+    return matches;
+  }
+
+  /**
+   * Creates and returns a new raster of spots found in the given raster of
+   * edges, moving over it in tiles TILE wide and comparing the masks with a
+   * DefaultMatcher. Prints the number of spots.
+   *
+   * @param edges the raster containing edges
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2) {
+    SummedAreaTable whitePixels = new SummedAreaTable(edges);
+    return detectSpots(edges, r1, r2, new DefaultMatcher(edges, whitePixels),
+        whitePixels, TILE);
+  }
+
+  /**
+   * Creates and returns a new raster of spots found in the given raster of
+   * edges, moving over it in tiles of the given width. Prints the number of
+   * spots, which is the same as the number printed by
+   * SpotDetection.detectSpots().
+   *
+   * @param edges the raster containing edges
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @param matcher the matcher for the raster of edges
+   * @param whitePixels the summed-area table of the raster of edges
+   * @param tile the width of a tile
+   * @return the new raster of spots found in the input raster
+   */
+  public static GreyRaster detectSpots(GreyRaster edges, int r1, int r2,
+      SpotMatcher matcher, SummedAreaTable whitePixels, int tile) {
+    long[][] matches = findMatches(matcher, whitePixels, edges,
+        MaskBank.DEFAULT, r1, r2, tile);
+    GreyRaster spots = new GreyRaster(edges.width(), edges.height());
+    SpotRegistry registry = new SpotRegistry();
+    int counter = 0;
+    for (int i = 0; i <= r2 - r1; ++i) {
+      counter += SpotDetection.countMatches(edges, spots, registry,
+          MaskBank.DEFAULT.spotCounter(r1, i), matches[i]);
+    }
+    StdOut.println(counter);
+    return spots;
+  }
+
+  /**
+   * Returns a picture of edges of the given size, made by repeating the given
+   * picture of edges.
+   *
+   * @param edges the raster of edges
+   * @param width the width of the new raster
+   * @param height the height of the new raster
+   * @return the new raster
+   */
+  private static GreyRaster repeat(GreyRaster edges, int width, int height) {
+    GreyRaster result = new GreyRaster(width, height);
+    for (int j = 0; j < height; ++j) {
+      for (int i = 0; i < width; ++i) {
+        result.set(i, j, edges.get(i % edges.width(), j % edges.height()));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of milliseconds it takes to find the matches of every
+   * mask, either mask by mask over the whole picture like findSpots(), or
+   * tile by tile. The best of several runs is returned.
+   *
+   * @param matcher the matcher for the raster of edges
+   * @param whitePixels the summed-area table of the raster of edges
+   * @param edges the raster of edges
+   * @param r1 the minimum radius for the spot masks
+   * @param r2 the maximum radius for the spot masks
+   * @param tile the width of a tile, or 0 to move over the whole picture
+   * @return the time taken in milliseconds
+   */
+  private static long time(SpotMatcher matcher, SummedAreaTable whitePixels,
+      GreyRaster edges, int r1, int r2, int tile) {
+    long best = Long.MAX_VALUE;
+    for (int run = 0; run < 3; ++run) {
+      long start = System.nanoTime();
+      if (tile == 0) {
+        for (int i = 0; i <= r2 - r1; ++i) {
+          RingMask mask = MaskBank.DEFAULT.mask(r1, i);
+          int diff = MaskBank.DEFAULT.difference(i);
+          matcher.prepare(mask);
+          for (int col = 0; col < edges.width() - mask.width(); ++col) {
+            for (int row = 0; row < edges.height() - mask.width(); ++row) {
+              if (whitePixels.mayMatch(mask, col, row, diff)) {
+                matcher.matches(mask, col, row, diff);
+              }
+            }
+          }
+        }
+      } else {
+        findMatches(matcher, whitePixels, edges, MaskBank.DEFAULT, r1, r2,
+            tile);
+      }
+      best = Math.min(best, (System.nanoTime() - start) / 1000000);
+    }
+    return best;
+  }
+
+  /**
+   * Unit tests the TiledSpotDetection class by checking that it finds the
+   * same spots as SpotDetection.detectSpots() in the given picture of edges,
+   * and benchmarks it by timing the search for matches with and without
+   * tiles, for several sizes of picture made by repeating the given picture
+   * of edges and several ranges of radii, with a SparseMatcher and a
+   * DefaultMatcher.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    GreyRaster edges = GreyRaster.fromPicture(new Picture(args[0]));
+    int[][] sizes = {{640, 480}, {2000, 1500}, {4000, 3000}};
+    int[][] radii = {{4, 7}, {8, 11}, {4, 11}};
+    for (int[] r : radii) {
+      boolean same = Arrays.equals(
+          SpotDetection.detectSpots(edges, r[0], r[1]).data(),
+          detectSpots(edges, r[0], r[1]).data());
+      StdOut.println("radii " + r[0] + " to " + r[1]
+          + " same as SpotDetection: " + same);
+    }
+    StdOut.println("size       radii  matcher        whole   tiled");
+    for (int[] size : sizes) {
+      GreyRaster big = repeat(edges, size[0], size[1]);
+      SummedAreaTable whitePixels = new SummedAreaTable(big);
+      SpotMatcher[] matchers = {new SparseMatcher(big, whitePixels),
+          new DefaultMatcher(big, whitePixels)};
+      for (int[] r : radii) {
+        for (SpotMatcher matcher : matchers) {
+          StdOut.printf("%4dx%-4d  %2d-%-2d  %-14s %5dms %5dms\n", size[0],
+              size[1], r[0], r[1], matcher.getClass().getSimpleName(),
+              time(matcher, whitePixels, big, r[0], r[1], 0),
+              time(matcher, whitePixels, big, r[0], r[1], TILE));
+        }
+      }
+    }
+  }
+
+}
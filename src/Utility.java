@@ -1,10 +1,8 @@
-import java.awt.Color;
-
 /**
  * The Utility class contains methods for converting pictures to 2D arrays, and
- * 2D arrays back to pictures. These are used by many of the classes in this
- * project so it is easiest to put them here rather than copying them to each
- * class.
+ * 2D arrays back to pictures. The stages of the project pass GreyRasters to
+ * each other instead, but these are still handy for printing and debugging
+ * small images.
  * 
  * @author Liam Foxcroft
  *
@@ -19,9 +17,11 @@ public class Utility {
    */
   public static int[][] getArrFromPic(Picture pic) {
     int[][] arr = new int[pic.width()][pic.height()];
-    for (int i = 0; i < pic.width(); ++i) {
-      for (int j = 0; j < pic.height(); ++j) {
-        arr[i][j] = pic.get(i, j).getRed(); // since all values are the same
+    int[] rgbRow = new int[pic.width()];
+    for (int j = 0; j < pic.height(); ++j) {
+      pic.getRGB(j, rgbRow);
+      for (int i = 0; i < pic.width(); ++i) {
+        arr[i][j] = (rgbRow[i] >> 16) & 0xFF; // since all values are the same
       }
     }
     return arr;
@@ -32,14 +32,22 @@ public class Utility {
    * 
    * @param arr a 2D array containing colors of pixels in a grey-scaled picture
    * @return the picture represented by the input array
+   * @throws IllegalArgumentException if a value is not between 0 and 255
    */
   public static Picture getPicFromArr(int[][] arr) {
     // TODO check arr[0] isnt length 0
     Picture pic = new Picture(arr.length, arr[0].length);
-    for (int i = 0; i < arr.length; ++i) {
-      for (int j = 0; j < arr[i].length; ++j) {
-        pic.set(i, j, new Color(arr[i][j], arr[i][j], arr[i][j]));
+    int[] rgbRow = new int[arr.length];
+    for (int j = 0; j < arr[0].length; ++j) {
+      for (int i = 0; i < arr.length; ++i) {
+        int grey = arr[i][j];
+        if ((grey & ~0xFF) != 0) { // as new Color(grey, grey, grey) checks
+          throw new IllegalArgumentException("grey value out of range: "
+              + grey);
+        }
+        rgbRow[i] = 0xFF000000 | grey << 16 | grey << 8 | grey; // opaque
       }
+      pic.setRGB(j, rgbRow);
     }
     return pic;
   }
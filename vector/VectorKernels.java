@@ -0,0 +1,204 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorKernels class runs the pixel-wise stages with the incubating
+ * Vector API, working on as many pixels at once as the widest vectors of the
+ * processor hold (64 bytes with AVX-512). It gives exactly the same output as
+ * ScalarKernels, which it uses for the pixels left over at the end of a run.
+ * <p>
+ * It is kept out of src because it only compiles and runs with the
+ * jdk.incubator.vector module added:
+ * <pre>
+ * javac -d bin src/*.java
+ * javac --add-modules jdk.incubator.vector -cp bin -d bin vector/*.java
+ * java --add-modules jdk.incubator.vector -cp bin Animal ...
+ * </pre>
+ * PixelKernels.DEFAULT picks this class when both are done, and falls back
+ * to ScalarKernels when they aren't.
+ *
+ * @author Liam Foxcroft
+ *
+ */
+public class VectorKernels implements PixelKernels {
+  private static final VectorSpecies<Byte> BYTES =
+      ByteVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Integer> INTS =
+      IntVector.SPECIES_PREFERRED;
+  private static final byte SIGN = (byte) 0x80; // flips unsigned to signed
+
+  /**
+   * Grey-scales a row of packed RGB values. The weighted sums are divided by
+   * 1000 by dividing by 8 with a shift and then by 125 with a multiply and a
+   * shift, which gives the exact quotient for every sum up to 255000. The
+   * sums which are exact multiples of 1000 are done again by
+   * GreyScale.getGrey() so the result is the same as the doubles give.
+   *
+   * @param rgb the packed RGB values
+   * @param sums a scratch array at least length long
+   * @param out the array where the grey values are written
+   * @param outIndex the index in out of the first grey value
+   * @param length the number of pixels
+   */
+  @Override
+  public void greyRow(int[] rgb, int[] sums, byte[] out, int outIndex,
+      int length) {
+    int bound = INTS.loopBound(length);
+    int i = 0;
+    for (; i < bound; i += INTS.length()) {
+      IntVector pixel = IntVector.fromArray(INTS, rgb, i);
+      IntVector sum = pixel.lanewise(VectorOperators.LSHR, 16).and(0xFF)
+          .mul(299)
+          .add(pixel.lanewise(VectorOperators.LSHR, 8).and(0xFF).mul(587))
+          .add(pixel.and(0xFF).mul(114));
+      IntVector grey = sum.lanewise(VectorOperators.LSHR, 3).mul(134218)
+          .lanewise(VectorOperators.LSHR, 24);
+      grey.intoArray(sums, i);
+      VectorMask<Integer> exact = grey.mul(1000).eq(sum);
+      if (exact.anyTrue()) {
+        for (int lane = 0; lane < INTS.length(); ++lane) {
+          if (exact.laneIsSet(lane)) {
+            sums[i + lane] = GreyScale.getGrey(rgb[i + lane]);
+          }
+        }
+      }
+    }
+    for (int k = 0; k < i; ++k) {
+      out[outIndex + k] = (byte) sums[k];
+    }
+    for (; i < length; ++i) { // fewer pixels left than lanes
+      out[outIndex + i] = (byte) GreyScale.getGrey(rgb[i]);
+    }
+  }
+
+  /**
+   * Applies noise reduction to a run of pixels, in the same way as
+   * NoiseReduction.mode(): the running count of each cell is found with the
+   * same ten comparisons, done on every lane at once, and the cell chosen in
+   * each lane is kept by blending.
+   *
+   * @param data the grey values of the picture
+   * @param index the index in data of the first pixel in the run
+   * @param stride the distance in data between two rows
+   * @param out the array where the reduced pixels are written
+   * @param outIndex the index in out of the first pixel in the run
+   * @param length the number of pixels in the run
+   */
+  @Override
+  public void reduceRun(byte[] data, int index, int stride, byte[] out,
+      int outIndex, int length) {
+    ByteVector zero = ByteVector.zero(BYTES);
+    int bound = BYTES.loopBound(length);
+    int n = 0;
+    for (; n < bound; n += BYTES.length()) {
+      int k = index + n;
+      ByteVector centre = ByteVector.fromArray(BYTES, data, k);
+      ByteVector right = ByteVector.fromArray(BYTES, data, k + 1);
+      ByteVector left = ByteVector.fromArray(BYTES, data, k - 1);
+      ByteVector below = ByteVector.fromArray(BYTES, data, k + stride);
+      ByteVector above = ByteVector.fromArray(BYTES, data, k - stride);
+      ByteVector rc = zero.blend((byte) 1, right.eq(centre));
+      ByteVector lc = zero.blend((byte) 1, left.eq(centre));
+      ByteVector bc = zero.blend((byte) 1, below.eq(centre));
+      ByteVector ac = zero.blend((byte) 1, above.eq(centre));
+      ByteVector lr = zero.blend((byte) 1, left.eq(right));
+      ByteVector br = zero.blend((byte) 1, below.eq(right));
+      ByteVector ar = zero.blend((byte) 1, above.eq(right));
+      ByteVector bl = zero.blend((byte) 1, below.eq(left));
+      ByteVector al = zero.blend((byte) 1, above.eq(left));
+      ByteVector ab = zero.blend((byte) 1, above.eq(below));
+      // the running counts, less one
+      ByteVector maxOccurence = zero;
+      ByteVector maxColor = centre;
+      VectorMask<Byte> more = rc.compare(VectorOperators.GT, maxOccurence);
+      maxOccurence = maxOccurence.blend(rc, more);
+      maxColor = maxColor.blend(right, more);
+      ByteVector count = lc.add(lr);
+      more = count.compare(VectorOperators.GT, maxOccurence);
+      maxOccurence = maxOccurence.blend(count, more);
+      maxColor = maxColor.blend(left, more);
+      count = bc.add(br).add(bl);
+      more = count.compare(VectorOperators.GT, maxOccurence);
+      maxOccurence = maxOccurence.blend(count, more);
+      maxColor = maxColor.blend(below, more);
+      count = ac.add(ar).add(al).add(ab);
+      more = count.compare(VectorOperators.GT, maxOccurence);
+      maxOccurence = maxOccurence.blend(count, more);
+      maxColor = maxColor.blend(above, more);
+      VectorMask<Byte> weight = rc.add(lc).add(bc).add(ac).eq(maxOccurence);
+      maxColor.blend(centre, weight).intoArray(out, outIndex + n);
+    }
+    NoiseReduction.reduceRun(data, index + n, stride, out, outIndex + n,
+        length - n);
+  }
+
+  /**
+   * Detects the edges in a run of pixels, in the same way as
+   * EdgeDetection.detectRun(). The bytes are unsigned, so their sign bits are
+   * flipped to order them as signed bytes, and the difference between the
+   * larger and the smaller of two pixels is then compared with epsilon as an
+   * unsigned byte.
+   *
+   * @param data the grey values of the picture
+   * @param index the index in data of the first pixel in the run
+   * @param stride the distance in data between two rows
+   * @param out the array where the edges (0 or 255) are written
+   * @param outIndex the index in out of the first pixel in the run
+   * @param length the number of pixels in the run
+   * @param epsilon the threshold value
+   */
+  @Override
+  public void detectRun(byte[] data, int index, int stride, byte[] out,
+      int outIndex, int length, int epsilon) {
+    int n = 0;
+    if (epsilon >= 0 && epsilon <= 255) { // else every pixel is the same
+      ByteVector zero = ByteVector.zero(BYTES);
+      byte threshold = (byte) epsilon;
+      int bound = BYTES.loopBound(length);
+      for (; n < bound; n += BYTES.length()) {
+        int k = index + n;
+        ByteVector centre = ByteVector.fromArray(BYTES, data, k).lanewise(
+            VectorOperators.XOR, SIGN);
+        VectorMask<Byte> edge = tooFar(centre, data, k + 1, threshold)
+            .or(tooFar(centre, data, k - 1, threshold))
+            .or(tooFar(centre, data, k + stride, threshold))
+            .or(tooFar(centre, data, k - stride, threshold));
+        zero.blend((byte) -1, edge).intoArray(out, outIndex + n);
+      }
+    }
+    EdgeDetection.detectRun(data, index + n, stride, out, outIndex + n,
+        length - n, epsilon);
+  }
+
+  /**
+   * Checks in every lane whether a neighbour differs from the centre by more
+   * than the threshold.
+   *
+   * @param centre the centre pixels, with their sign bits flipped
+   * @param data the grey values of the picture
+   * @param k the index in data of the first neighbour
+   * @param threshold the threshold value as an unsigned byte
+   * @return the lanes where the difference is too large
+   */
+  private static VectorMask<Byte> tooFar(ByteVector centre, byte[] data, int k,
+      byte threshold) {
+    ByteVector neighbour = ByteVector.fromArray(BYTES, data, k).lanewise(
+        VectorOperators.XOR, SIGN);
+    return centre.max(neighbour).sub(centre.min(neighbour))
+        .compare(VectorOperators.UNSIGNED_GT, threshold);
+  }
+
+  /**
+   * Returns the name of the kernels.
+   *
+   * @return "vector" and the number of bits in a vector
+   */
+  @Override
+  public String name() {
+    return "vector" + BYTES.vectorBitSize();
+  }
+
+}